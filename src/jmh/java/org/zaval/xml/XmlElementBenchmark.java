@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.xml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a JRC XML file of the layout XmlWriter writes, with the given number of keys translated
+ * into three languages. Run with {@code gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlElementBenchmark {
+	private static final String[] LANGS = { "en", "de", "ru" };
+
+	@Param({ "1000", "40000" })
+	public int keys;
+
+	private String xml;
+
+	@Setup
+	public void setUp() {
+		StringBuilder sb = new StringBuilder("<xml>\n");
+		for (int i = 0; i < keys; ++i) {
+			sb.append("\t<key name=\"module").append(i % 97).append(".dialog.label").append(i).append("\">\n");
+			for (String lang : LANGS) {
+				sb.append("\t\t<value lang=\"").append(lang).append("\">Text &amp; more text for ");
+				sb.append(lang).append(" number ").append(i).append("</value>\n");
+			}
+			sb.append("\t</key>\n");
+		}
+		xml = sb.append("</xml>\n").toString();
+	}
+
+	@Benchmark
+	public XmlElement parse() throws IOException {
+		XmlElement root = new XmlElement();
+		root.parse(new StringReader(xml));
+		return root;
+	}
+}
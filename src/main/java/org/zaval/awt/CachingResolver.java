@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.awt;
+
+import java.awt.Image;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the images resolved by another resolver, so that each name is resolved once however many
+ * nodes ask for it. A name the other resolver gives no image for is asked for again next time.
+ * <p>
+ * The cache is not bounded: a tree uses a handful of distinct images, so an LRU limit would only
+ * add bookkeeping, and dropping an image that nodes still show would not free its memory anyway.
+ */
+public class CachingResolver implements ImageResolver {
+	private final ImageResolver base;
+	private final Map<String, Image> cache = new HashMap<>();
+
+	public CachingResolver(ImageResolver base) {
+		this.base = base;
+	}
+
+	/**
+	 * Resolves the images now rather than on first use.
+	 */
+	public void preload(String... names) {
+		for (String name : names) {
+			getImage(name);
+		}
+	}
+
+	@Override
+	public synchronized Image getImage(String str) {
+		Image i = cache.get(str);
+		if (i == null) {
+			i = base.getImage(str);
+			if (i != null) {
+				cache.put(str, i);
+			}
+		}
+		return i;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.awt;
+
+import java.util.Arrays;
+
+import org.zaval.awt.peer.TreeNode;
+
+/**
+ * The children of a node in sibling order, with a segment tree over the number of viewable rows
+ * and the widest row of each child's subtree. Sums, maximums, prefix sums and finding the child
+ * that holds a given row take O(log n). Removed children leave an empty slot behind until the
+ * owner rebuilds the list. Kept by {@link LevelTree}.
+ */
+public final class ChildRows {
+	private TreeNode[] nodes = new TreeNode[2];
+	private int[] rows = new int[4]; // leaves of slot i at nodes.length + i
+	private int[] widest = new int[4];
+	private int size; // slots in use, removed ones included
+	private int live;
+
+	void clear() {
+		Arrays.fill(nodes, 0, size, null);
+		Arrays.fill(rows, 0);
+		Arrays.fill(widest, 0);
+		size = 0;
+		live = 0;
+	}
+
+	/**
+	 * Adds the node after the last slot and records the slot in it.
+	 */
+	void append(TreeNode node) {
+		if (size == nodes.length) {
+			grow();
+		}
+		node.slot = size;
+		nodes[size++] = node;
+		++live;
+		set(node.slot, node.rows, node.widest);
+	}
+
+	void remove(int slot) {
+		set(slot, 0, 0);
+		nodes[slot].slot = -1;
+		nodes[slot] = null;
+		--live;
+	}
+
+	/**
+	 * @return true when the empty slots outnumber the children, so that a rebuild pays off
+	 */
+	boolean isSparse() {
+		return size > ((live * 2) + 8);
+	}
+
+	void set(int slot, int r, int w) {
+		int i = nodes.length + slot;
+		rows[i] = r;
+		widest[i] = w;
+		for (i >>= 1; i > 0; i >>= 1) {
+			rows[i] = rows[2 * i] + rows[(2 * i) + 1];
+			widest[i] = Math.max(widest[2 * i], widest[(2 * i) + 1]);
+		}
+	}
+
+	int getRows() {
+		return rows[1];
+	}
+
+	int getWidest() {
+		return widest[1];
+	}
+
+	/**
+	 * @return rows of the children in the slots before the given one
+	 */
+	int rowsBefore(int slot) {
+		int res = 0;
+		for (int i = nodes.length + slot; i > 1; i >>= 1) {
+			if ((i & 1) == 1) {
+				res += rows[i - 1];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return the child whose rows hold the row, counted from the first row of the first child; its
+	 *         first row is rowsBefore(child.slot)
+	 */
+	TreeNode find(int row) {
+		if ((row < 0) || (row >= rows[1])) {
+			return null;
+		}
+		int i = 1;
+		while (i < nodes.length) {
+			if (row < rows[2 * i]) {
+				i = 2 * i;
+			}
+			else {
+				row -= rows[2 * i];
+				i = (2 * i) + 1;
+			}
+		}
+		return nodes[i - nodes.length];
+	}
+
+	private void grow() {
+		int n = nodes.length * 2;
+		nodes = Arrays.copyOf(nodes, n);
+		rows = new int[2 * n];
+		widest = new int[2 * n];
+		for (int slot = 0; slot < size; ++slot) {
+			if (nodes[slot] != null) {
+				rows[n + slot] = nodes[slot].rows;
+				widest[n + slot] = nodes[slot].widest;
+			}
+		}
+		for (int i = n - 1; i > 0; --i) {
+			rows[i] = rows[2 * i] + rows[(2 * i) + 1];
+			widest[i] = Math.max(widest[2 * i], widest[(2 * i) + 1]);
+		}
+	}
+}
@@ -21,23 +21,30 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.IntStream;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import org.zaval.awt.peer.TreeNode;
 
+/**
+ * Nodes of a tree control. Every node keeps the number of viewable rows and the widest row of its
+ * subtree, and every parent a {@link ChildRows} over its children, so that the viewable rows need
+ * no list: the node in a row, the row of a node and the view size are found in O(depth * log n),
+ * and inserting, removing, expanding, collapsing or hiding a node updates the counts on its way up
+ * in the same time.
+ */
 public class LevelTree {
 	// constants for insertion
 	public static final int CHILD = 0;
 	private static final int NEXT = CHILD + 1;
 	private static final int LAST = CHILD + 2;
 
-	List<TreeNode> e = new ArrayList<>(); // e is vector of existing nodes
-	List<TreeNode> v = new ArrayList<>(); // v is vector of viewable nodes
 	private TreeNode rootNode; // root node of tree
 	private ImageResolver imgres; // To autosetup
+	private NodeSource source; // creates the children of pending nodes
+	private ToIntFunction<TreeNode> rowWidth; // width of the row showing a node
 
 	private int count; // Number of nodes in the tree
-	private int viewCount;// Number of viewable nodes in the tree (A node is viewable if all of its parents are expanded.)
 
 	private static final String delim = ".";
 
@@ -47,8 +54,92 @@ public class LevelTree {
 		count = 0;
 	}
 
+	/**
+	 * @return number of viewable nodes: the children of the root and, recursively, of every expanded
+	 *         node, except hidden ones
+	 */
 	public int getViewCount() {
-		return viewCount;
+		return (rootNode == null) || (rootNode.childRows == null) ? 0 : rootNode.childRows.getRows();
+	}
+
+	/**
+	 * @return width of the widest viewable row, as given by the function set with setRowWidth()
+	 */
+	int getViewWidth() {
+		return (rootNode == null) || (rootNode.childRows == null) ? 0 : rootNode.childRows.getWidest();
+	}
+
+	/**
+	 * Sets the width of the row showing a node and measures all the rows with it.
+	 */
+	void setRowWidth(ToIntFunction<TreeNode> rowWidth) {
+		this.rowWidth = rowWidth;
+		if (rootNode != null) {
+			recount(rootNode);
+		}
+	}
+
+	/**
+	 * Updates the counts after the node was expanded, collapsed or hidden, or its row changed its
+	 * width; called by the nodes.
+	 */
+	public void nodeChanged(TreeNode node) {
+		if (node.isExpanded()) {
+			materialize(node);
+		}
+		refresh(node);
+	}
+
+	/**
+	 * @return the node in the row of the viewable list, or null if there is no such row
+	 */
+	TreeNode getViewNode(int row) {
+		for (TreeNode tn = rootNode; (tn != null) && (tn.childRows != null); --row) {
+			TreeNode c = tn.childRows.find(row);
+			if (c == null) {
+				return null;
+			}
+			row -= tn.childRows.rowsBefore(c.slot);
+			if (row == 0) {
+				return c;
+			}
+			tn = c;
+		}
+		return null;
+	}
+
+	/**
+	 * @return row of the node in the viewable list, or -1 if it is not viewable
+	 */
+	int indexOf(TreeNode node) {
+		if ((node == null) || node.hidden) {
+			return -1;
+		}
+		int row = 0;
+		for (TreeNode tn = node; (tn.parent != null) && (tn.slot >= 0); tn = tn.parent) {
+			row += tn.parent.childRows.rowsBefore(tn.slot);
+			if (tn.parent == rootNode) {
+				return row;
+			}
+			if (!tn.parent.isExpanded()) {
+				return -1;
+			}
+			++row;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of rows from the viewable node down to its next viewable sibling, or 0 if it is
+	 *         the last one
+	 */
+	int getSiblingSpan(TreeNode node) {
+		if ((node.parent == null) || (node.slot < 0)) {
+			return 0;
+		}
+		ChildRows siblings = node.parent.childRows;
+		int after = siblings.getRows() - siblings.rowsBefore(node.slot) - node.rows;
+		return after > 0 ? node.rows : 0;
 	}
 
 	// Insert a new node relative to a node in the tree.
@@ -64,6 +155,9 @@ public class LevelTree {
 		}
 		switch (position) {
 			case CHILD:
+				if (materialize(relativeNode) && (nameCache.get(newNode.text) != null)) {
+					return; // the source has just created it
+				}
 				addChild(newNode, relativeNode);
 				break;
 
@@ -79,19 +173,30 @@ public class LevelTree {
 				// invalid position
 				return;
 		}
-		setResolver(rootNode, imgres);
 		nameCache.put(newNode.text, newNode);
 	}
 
+	/**
+	 * Adds many nodes at once. Each node's parent field must already name its parent, which is in
+	 * the tree or comes earlier in the list; top level nodes have no parent. Children are added in
+	 * list order.
+	 */
+	void insertAll(List<TreeNode> nodes) {
+		if (rootNode == null) {
+			append(new TreeNode("root"));
+		}
+		for (TreeNode tn : nodes) {
+			addChild(tn, tn.parent == null ? rootNode : tn.parent);
+			nameCache.put(tn.text, tn);
+		}
+	}
+
 	public TreeNode getRootNode() {
 		return rootNode;
 	}
 
 	private boolean exists(TreeNode node) {
-		if (nameCache.get(node.text) != null) {
-			return true;
-		}
-		return IntStream.range(0, count).anyMatch(i -> node == e.get(i));
+		return nameCache.get(node.text) != null;
 	}
 
 // This functions will be added on caf
@@ -99,21 +204,57 @@ public class LevelTree {
 		if (name == null) {
 			return null;
 		}
-		if (nameCache.get(name) != null) {
-			return nameCache.get(name);
+		TreeNode tn = nameCache.get(name);
+		if ((tn == null) && (source != null) && (rootNode != null)) {
+			// create the nodes on the way to it
+			String parentName = source.getParentName(name);
+			TreeNode parent = parentName == null ? rootNode : getNode(parentName);
+			if ((parent != null) && materialize(parent)) {
+				tn = nameCache.get(name);
+			}
 		}
-		return IntStream.range(0, count).mapToObj(i -> e.get(i)).filter(tn -> name.equals(tn.text)).findFirst().orElse(null);
+		return tn;
 	}
 
-	private void insertChild(String name, String addname) {
-		if ((name == null) || (addname == null)) {
-			return;
+	/**
+	 * @return the node if it was already created, never asking the source
+	 */
+	TreeNode findNode(String name) {
+		return nameCache.get(name);
+	}
+
+	/**
+	 * Sets the source for the children of pending nodes. The top level is taken from it as well.
+	 */
+	void setNodeSource(NodeSource source) {
+		this.source = source;
+		if (source != null) {
+			if (rootNode == null) {
+				append(new TreeNode("root"));
+			}
+			rootNode.pending = true;
 		}
-		TreeNode tn = getNode(name);
-		if (tn == null) {
-			return;
+	}
+
+	/**
+	 * Creates the children of a pending node.
+	 *
+	 * @return true if any were created
+	 */
+	private boolean materialize(TreeNode tn) {
+		if (!tn.pending || (source == null)) {
+			return false;
+		}
+		tn.pending = false;
+		boolean res = false;
+		for (TreeNode c : source.getChildren(tn)) {
+			if (nameCache.get(c.text) == null) {
+				addChild(c, tn);
+				nameCache.put(c.text, c);
+				res = true;
+			}
 		}
-		insert(new TreeNode(addname, null, null), tn, LevelTree.CHILD);
+		return res;
 	}
 
 	void insertRoot(String addname) {
@@ -123,7 +264,8 @@ public class LevelTree {
 		if (rootNode == null) {
 			append(new TreeNode("root"));
 		}
-		insertChild(rootNode.text, addname);
+		// by reference, a key may have the same name as the root
+		insert(new TreeNode(addname, null, null), rootNode, LevelTree.CHILD);
 	}
 
 	// end add
@@ -134,11 +276,13 @@ public class LevelTree {
 			rootNode = newNode;
 			rootNode.setDepth(0);
 			rootNode.setStringProperty("PATH", "");
-			e.add(rootNode);
+			nameCache.put(rootNode.text, rootNode);
 			count = 1;
+			recount(rootNode);
 		}
 		else {
 			addSibling(newNode, rootNode);
+			nameCache.put(newNode.text, newNode);
 		}
 		setResolver(newNode, imgres);
 	}
@@ -146,6 +290,7 @@ public class LevelTree {
 	private void addChild(TreeNode newNode, TreeNode relativeNode) {
 		if (relativeNode.child == null) {
 			relativeNode.child = newNode;
+			relativeNode.lastChild = newNode;
 			newNode.parent = relativeNode;
 			newNode.setDepth(relativeNode.getDepth() + 1);
 			String prop = relativeNode.getStringProperty("PATH");
@@ -153,19 +298,21 @@ public class LevelTree {
 				prop += delim;
 			}
 			newNode.setStringProperty("PATH", prop + newNode.text);
-			e.add(newNode);
+			++relativeNode.numberOfChildren;
 			count++;
+			setResolver(newNode, imgres);
+			attach(newNode);
 		}
 		else {
 			addSibling(newNode, relativeNode.child);
 		}
-
-		++relativeNode.numberOfChildren;
-		setResolver(newNode, imgres);
 	}
 
 	private void addSibling(TreeNode newNode, TreeNode siblingNode) {
 		TreeNode tempNode = siblingNode;
+		if ((siblingNode.parent != null) && (siblingNode.parent.lastChild != null)) {
+			tempNode = siblingNode.parent.lastChild;
+		}
 
 		String s = siblingNode.getStringProperty("PATH");
 		int index = s.lastIndexOf(delim);
@@ -180,26 +327,109 @@ public class LevelTree {
 		}
 		tempNode.sibling = newNode;
 		newNode.parent = tempNode.parent;
+		if (newNode.parent != null) {
+			newNode.parent.lastChild = newNode;
+			++newNode.parent.numberOfChildren;
+		}
 		newNode.setDepth(tempNode.getDepth());
-		e.add(newNode);
 		count++;
 		setResolver(newNode, imgres);
+		attach(newNode);
+	}
+
+	/**
+	 * Counts the rows of a node just linked to its parent and adds them to the parent's.
+	 */
+	private void attach(TreeNode node) {
+		if (node.parent == null) {
+			return; // a sibling of the root, which is not viewable
+		}
+		recount(node);
+		if (node.parent.childRows == null) {
+			node.parent.childRows = new ChildRows();
+		}
+		node.parent.childRows.append(node);
+		refresh(node.parent);
+	}
+
+	/**
+	 * Recomputes the counts of the node and its descendants from scratch, children first.
+	 */
+	private void recount(TreeNode top) {
+		List<TreeNode> nodes = new ArrayList<>();
+		nodes.add(top);
+		forEachNode(top.child, nodes::add);
+		for (int i = nodes.size() - 1; i >= 0; --i) {
+			TreeNode tn = nodes.get(i);
+			if (tn.child == null) {
+				tn.childRows = null;
+			}
+			else {
+				if (tn.childRows == null) {
+					tn.childRows = new ChildRows();
+				}
+				tn.childRows.clear();
+				for (TreeNode c = tn.child; c != null; c = c.sibling) {
+					tn.childRows.append(c);
+				}
+			}
+			tn.rows = countRows(tn);
+			tn.widest = findWidest(tn);
+		}
+	}
+
+	/**
+	 * Brings the counts of the node and of its ancestors up to date with the node's state and its
+	 * children's counts, stopping at the first one that does not change.
+	 */
+	private void refresh(TreeNode node) {
+		for (TreeNode tn = node; (tn.parent != null) && (tn.slot >= 0); tn = tn.parent) {
+			int r = countRows(tn);
+			int w = findWidest(tn);
+			if ((r == tn.rows) && (w == tn.widest)) {
+				return;
+			}
+			tn.rows = r;
+			tn.widest = w;
+			tn.parent.childRows.set(tn.slot, r, w);
+		}
+	}
+
+	private static int countRows(TreeNode tn) {
+		if (tn.hidden) {
+			return 0;
+		}
+		return 1 + ((tn.isExpanded() && (tn.childRows != null)) ? tn.childRows.getRows() : 0);
+	}
+
+	private int findWidest(TreeNode tn) {
+		if (tn.hidden) {
+			return 0;
+		}
+		int w = rowWidth == null ? 0 : rowWidth.applyAsInt(tn);
+		return (tn.isExpanded() && (tn.childRows != null)) ? Math.max(w, tn.childRows.getWidest()) : w;
 	}
 
 	void remove(TreeNode node) {
 		if (!exists(node)) {
 			return;
 		}
-		nameCache.remove(node.text);
+		ChildRows siblings = null;
+		if ((node.parent != null) && (node.slot >= 0)) {
+			siblings = node.parent.childRows;
+			siblings.remove(node.slot);
+		}
 
 		// remove node and its decendents
 		if (node.parent != null) {
+			--node.parent.numberOfChildren;
 			if (node.parent.child == node) {
 				if (node.sibling != null) {
 					node.parent.child = node.sibling;
 				}
 				else {
 					node.parent.child = null;
+					node.parent.lastChild = null;
 					node.parent.collapse();
 				}
 			}
@@ -215,6 +445,7 @@ public class LevelTree {
 				}
 				else {
 					tn.sibling = null;
+					node.parent.lastChild = tn;
 				}
 			}
 		}
@@ -243,112 +474,83 @@ public class LevelTree {
 			}
 		}
 
-		recount();
-	}
-
-	private void recount() {
-		count = 0;
-		e = new ArrayList<>();
-		nameCache.clear();
-
-		if (rootNode != null) {
-			rootNode.depth = 0;
-			traverse(rootNode);
-		}
-	}
-
-	private void traverse(TreeNode node) {
-		count++;
-		e.add(node);
-		nameCache.put(node.text, node);
-
-		if (node.child != null) {
-			node.child.depth = node.depth + 1;
-			traverse(node.child);
-		}
-		if (node.sibling != null) {
-			node.sibling.depth = node.depth;
-			traverse(node.sibling);
+		if (siblings != null) {
+			if (siblings.isSparse()) {
+				siblings.clear();
+				for (TreeNode tn = node.parent.child; tn != null; tn = tn.sibling) {
+					siblings.append(tn);
+				}
+			}
+			refresh(node.parent);
 		}
-	}
-
-	void resetVector() {
-		// Traverses tree to put nodes into vector v
-		// for internal processing. Depths of nodes are set,
-		// and viewCount and viewWidest is set.
-		v = new ArrayList<>(count);
 
-		if (count < 1) {
-			viewCount = 0;
-			return;
-		}
-		rootNode.depth = 0;
-		vectorize(rootNode.child);
-		viewCount = v.size();
+		// forget the node and its descendants
+		nameCache.remove(node.text);
+		node.setOwner(null);
+		--count;
+		forEachNode(node.child, tn -> {
+			nameCache.remove(tn.text);
+			tn.setOwner(null);
+			--count;
+		});
 	}
 
-	private void vectorize(TreeNode node) {
-		if (node == null) {
-			return;
-		}
-		nameCache.put(node.text, node);
-
-		if (!node.hidden) {
-			v.add(node);
-			if (node.isExpanded()) {
-				if (node.child != null) {
-					node.child.depth = node.depth + 1;
-					vectorize(node.child);
+	/**
+	 * Calls the action for the node, its siblings and all their descendants.
+	 */
+	private static void forEachNode(TreeNode first, Consumer<TreeNode> action) {
+		List<TreeNode> stack = new ArrayList<>();
+		if (first != null) {
+			stack.add(first);
+		}
+		while (!stack.isEmpty()) {
+			for (TreeNode tn = stack.remove(stack.size() - 1); tn != null; tn = tn.sibling) {
+				action.accept(tn);
+				if (tn.child != null) {
+					stack.add(tn.child);
 				}
 			}
 		}
+	}
 
-		if (node.sibling != null) {
-			node.sibling.depth = node.depth;
-			vectorize(node.sibling);
+	/**
+	 * Creates the top level of the tree if the node source has not yet been asked for it.
+	 */
+	void prepareView() {
+		if (rootNode != null) {
+			materialize(rootNode);
 		}
 	}
 
 	public void setResolver(ImageResolver imgres) {
 		this.imgres = imgres;
-		TreeNode t = rootNode;
-		setResolver(t, imgres);
+		forEachNode(rootNode, tn -> tn.setResolver(imgres));
+		if ((rootNode != null) && (rowWidth != null)) {
+			recount(rootNode); // the images count in the widths
+		}
 	}
 
 	private void setResolver(TreeNode t, ImageResolver imgres) {
-		if (t != null) {
-			t.setResolver(imgres);
-		}
-		for (TreeNode c : e) {
-			c.setResolver(imgres);
-		}
+		t.setResolver(imgres);
+		t.setOwner(this);
 	}
 
 	void expandAll() {
-		recount();
-		if (e == null) {
-			return;
-		}
-		for (TreeNode tn : e) {
+		forEachNode(rootNode, tn -> {
+			materialize(tn);
 			tn.expand();
-		}
+		});
 	}
 
 	void collapseAll() {
-		recount();
-		if (e == null) {
-			return;
-		}
-		for (TreeNode tn : e) {
-			tn.collapse();
-		}
+		forEachNode(rootNode, TreeNode::collapse);
 	}
 
 	private int getNumChild(TreeNode parent) {
-		recount();
 		if (parent == null) {
 			return -1;
 		}
+		materialize(parent);
 		TreeNode next = parent.child;
 		int childCount = 0;
 		while (next != null) {
@@ -359,7 +561,9 @@ public class LevelTree {
 	}
 
 	TreeNode[] enumChild(TreeNode tn) {
-		recount();
+		if (tn != null) {
+			materialize(tn);
+		}
 		if ((tn == null) || (tn.child == null)) {
 			return null;
 		}
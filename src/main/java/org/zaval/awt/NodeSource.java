@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+
+package org.zaval.awt;
+
+import java.util.List;
+
+import org.zaval.awt.peer.TreeNode;
+
+/**
+ * Creates the children of tree nodes on demand, see {@link TreeNode#pending}.
+ */
+public interface NodeSource {
+	/**
+	 * @return the children of the node (the root node for the top level), in display order
+	 */
+	List<TreeNode> getChildren(TreeNode parent);
+
+	/**
+	 * @return name of the node the named one is a child of, or null if it is at the top level
+	 */
+	String getParentName(String name);
+}
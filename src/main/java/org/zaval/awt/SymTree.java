@@ -28,6 +28,7 @@ import java.awt.LayoutManager;
 import java.awt.Panel;
 import java.awt.Rectangle;
 import java.awt.Scrollbar;
+import java.util.List;
 
 import org.zaval.awt.peer.TreeNode;
 
@@ -57,6 +58,7 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 	private int posy;
 	private final Dimension scrollInsets = new Dimension(10, 0);
 	private final LevelTree ltree;
+	private FontMetrics rowWidthMetrics; // the rows of the tree were measured with it
 	private final ScrollLayout sl = new ScrollLayout();
 
 	private static final int DELETE = 127;
@@ -99,12 +101,34 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 		ltree.insert(newNode, relativeNode, position);
 	}
 
+	/**
+	 * Adds the nodes in one go, see {@link LevelTree#insertAll(List)}.
+	 */
+	public void insertAll(List<TreeNode> nodes) {
+		ltree.insertAll(nodes);
+	}
+
+	/**
+	 * Makes the tree take the children of pending nodes from the source, see
+	 * {@link LevelTree#setNodeSource(NodeSource)}.
+	 */
+	public void setNodeSource(NodeSource source) {
+		ltree.setNodeSource(source);
+	}
+
+	/**
+	 * @return the node if it was already created; unlike getNode(), never creates nodes
+	 */
+	public TreeNode findNode(String name) {
+		return ltree.findNode(name);
+	}
+
 	public TreeNode getRootNode() {
 		return ltree.getRootNode();
 	}
 
 	private void resetVector() {
-		ltree.resetVector();
+		ltree.prepareView();
 	}
 
 // This functions will be added on caf
@@ -132,10 +156,7 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 	public boolean selectNode(TreeNode tn) {
 		selectedNode = tn;
 		int viewCount = getViewCount();
-		int index = getIndex(selectedNode);
-		if (index == -1) {
-			index = ltree.e.indexOf(selectedNode);
-		}
+		int index = getViewableIndex(selectedNode);
 		if (index > (viewCount - 1)) {
 			index = viewCount - 1;
 		}
@@ -164,26 +185,20 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 	public void remove(TreeNode node) {
 		int viewCount = getViewCount();
 		if (node == selectedNode) {
-			int index = getIndex(selectedNode);
-
-			if (index == -1) {
-				index = ltree.e.indexOf(selectedNode);
-			}
+			int index = getViewableIndex(selectedNode);
 
 			if (index > (viewCount - 1)) {
 				index = viewCount - 1;
 			}
 
 			if (index > 0) {
-				changeSelection(ltree.v.get(index - 1), index - 1);
+				changeSelection(ltree.getViewNode(index - 1), index - 1);
+			}
+			else if (viewCount > 1) {
+				changeSelection(ltree.getViewNode(1), 1);
 			}
 			else if (viewCount > 0) {
-				try {
-					changeSelection(ltree.v.get(1), 1);
-				}
-				catch (Exception e) {
-					changeSelection(ltree.v.get(0), 0);
-				}
+				changeSelection(ltree.getViewNode(0), 0);
 			}
 		}
 		ltree.remove(node);
@@ -324,14 +339,14 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 			case Event.UP:
 				if (index > 0) {
 					index--;
-					changeSelection(ltree.v.get(index), index);
+					changeSelection(ltree.getViewNode(index), index);
 					sendActionEvent(event);
 				}
 				break;
 			case Event.DOWN:
 				if (index < (viewCount - 1)) {
 					index++;
-					changeSelection(ltree.v.get(index), index);
+					changeSelection(ltree.getViewNode(index), index);
 					sendActionEvent(event);
 				}
 				break;
@@ -372,14 +387,14 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 			}
 				break;
 			case Event.HOME: {
-				f = ltree.v.get(0);
+				f = ltree.getViewNode(0);
 				changeSelection(f, 0);
 				sendActionEvent(event);
 			}
 				break;
 			case Event.END: {
-				f = ltree.v.get(ltree.v.size() - 1);
-				changeSelection(f, ltree.v.size() - 1);
+				f = ltree.getViewNode(viewCount - 1);
+				changeSelection(f, viewCount - 1);
 				sendActionEvent(event);
 			}
 				break;
@@ -435,19 +450,12 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 			return; //clicked below the last node
 		}
 
-		for (int i = 0; (i <= index) && (i < ltree.v.size()); ++i) {
-			TreeNode tmpNode = ltree.v.get(i);
-			if (tmpNode.getHide()) {
-				++index;
-			}
-		}
-
-		if (index >= ltree.v.size()) {
+		if (index >= getViewCount()) {
 			return;
 		}
 
 		TreeNode oldNode = selectedNode;
-		TreeNode newNode = ltree.v.get(index);
+		TreeNode newNode = ltree.getViewNode(index);
 		int newDepth = newNode.getDepth();
 
 		// check click in place plus/minus
@@ -519,7 +527,20 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 	}
 
 	private int getIndex(TreeNode node) {
-		return ltree.v.indexOf(node);
+		return node == null ? -1 : ltree.indexOf(node);
+	}
+
+	/**
+	 * @return row of the node, or of its nearest viewable ancestor if it is not viewable, or -1
+	 */
+	private int getViewableIndex(TreeNode node) {
+		for (TreeNode tn = node; tn != null; tn = tn.parent) {
+			int index = getIndex(tn);
+			if (index >= 0) {
+				return index;
+			}
+		}
+		return -1;
 	}
 
 	private void changeSelection(TreeNode node, int index) {
@@ -625,14 +646,18 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 		g1.setColor(getBackground());
 		g1.fillRect(0, 0, viewWidth, viewHeight); // clear image
 
-		int lastOne = ltree.v.size();
-		getViewCount();
-		int skipCount = 0;
-		for (int i = 0; i < lastOne; ++i) {
+		// only the rows in the view are drawn, starting with the one partly covered by the top edge
+		int rows = getViewCount();
+		int first = Math.max(0, (-posy / cellSize) - 1);
+		int lastOne = Math.min(rows, first + (viewHeight / cellSize) + 3);
+		if (first < lastOne) {
+			drawCrossingLines(first);
+		}
+		for (int i = first; i < lastOne; ++i) {
 			TreeNode node = null;
 			// This block is better than synchronization for every call to LevelTree
 			try {
-				node = ltree.v.get(i);
+				node = ltree.getViewNode(i);
 			}
 			catch (Exception e) {
 			}
@@ -644,17 +669,13 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 			}
 
 			int x = posx + (cellSize * (node.depth - 1));
-			int y = posy + ((i - skipCount) * cellSize);
+			int y = posy + (i * cellSize);
 
 			// draw lines
 			g1.setColor(getForeground());
 
 			// draw vertical sibling line
-			TreeNode sb = getSibling(node);
-			if (sb != null) {
-				int k = getIndex(sb) - getIndex(node);
-				drawDotLine(x + (cellSize / 2), y + (cellSize / 2), x + (cellSize / 2), y + (cellSize / 2) + (k * cellSize));
-			}
+			drawSiblingLine(node, i);
 
 			// draw vertical child lines
 			if (node.isExpanded()) {
@@ -705,36 +726,48 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 		}
 	}
 
-	private TreeNode getSibling(TreeNode node) {
-		TreeNode tn = node.sibling;
-		while ((tn != null) && tn.hidden) {
-			tn = tn.sibling;
+	private void drawSiblingLine(TreeNode node, int row) {
+		int k = ltree.getSiblingSpan(node);
+		if (k > 0) {
+			int x = posx + (cellSize * (node.depth - 1)) + (cellSize / 2);
+			int y = posy + (row * cellSize) + (cellSize / 2);
+			drawDotLine(x, y, x, y + (k * cellSize));
 		}
-		return tn;
 	}
 
-	private int getMaxWidth() {
-		int max = 0;
-		for (int i = 0; i < ltree.v.size(); i++) {
-			TreeNode node = ltree.v.get(i);
-			if (node.getHide()) {
-				continue;
+	/**
+	 * Draws the sibling lines that pass through the view from rows above it: they belong to the
+	 * ancestors of the first row drawn.
+	 */
+	private void drawCrossingLines(int first) {
+		g1.setColor(getForeground());
+		for (TreeNode tn = ltree.getViewNode(first).parent; tn != null; tn = tn.parent) {
+			int row = ltree.indexOf(tn);
+			if ((row >= 0) && ((row + ltree.getSiblingSpan(tn)) > first)) {
+				drawSiblingLine(tn, row);
 			}
-			String text = node.caption == null ? node.text : node.caption;
-			int depth = node.depth;
+		}
+	}
 
-			int stringWidth = ((((depth - 1) * cellSize) + cellSize + textInset) - 1) + ((fm == null) ? 0 : fm.stringWidth(text));
-			if ((node.getImage() != null) && (fm != null)) {
-				stringWidth += fm.getHeight();
-			}
-			if ((node.getIndicator() != null) && (fm != null)) {
-				stringWidth += fm.getHeight();
-			}
-			if (stringWidth > max) {
-				max = stringWidth;
-			}
+	private int getMaxWidth() {
+		// the tree keeps the widest row; it needs measuring again only when the font does change
+		if (rowWidthMetrics != fm) {
+			rowWidthMetrics = fm;
+			ltree.setRowWidth(this::getRowWidth);
 		}
-		return max;
+		return ltree.getViewWidth();
+	}
+
+	private int getRowWidth(TreeNode node) {
+		String text = node.caption == null ? node.text : node.caption;
+		int stringWidth = ((((node.depth - 1) * cellSize) + cellSize + textInset) - 1) + ((fm == null) ? 0 : fm.stringWidth(text));
+		if ((node.getImage() != null) && (fm != null)) {
+			stringWidth += fm.getHeight();
+		}
+		if ((node.getIndicator() != null) && (fm != null)) {
+			stringWidth += fm.getHeight();
+		}
+		return stringWidth;
 	}
 
 	private void drawNodeText(TreeNode node, int yPosition, boolean eraseBackground) {
@@ -765,12 +798,21 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 	}
 
 	private void drawDotLine(int x0, int y0, int x1, int y1) {
+		// dots outside of the view are skipped, keeping the phase of the rest
 		if (y0 == y1) {
+			if (x0 < 0) {
+				x0 += ((1 - x0) / 2) * 2;
+			}
+			x1 = Math.min(x1, viewWidth);
 			for (int i = x0; i < x1; i += 2) {
 				g1.drawLine(i, y0, i, y1);
 			}
 		}
 		else {
+			if (y0 < 0) {
+				y0 += ((1 - y0) / 2) * 2;
+			}
+			y1 = Math.min(y1, viewHeight);
 			for (int i = y0; i < y1; i += 2) {
 				g1.drawLine(x0, i, x1, i);
 			}
@@ -780,7 +822,7 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 	@Override
 	public Dimension preferredSize() {
 		FontMetrics fm = getFontMetrics(getFont());
-		return new Dimension(175, Math.min(ltree.v.size() * fm.getHeight(), 500));
+		return new Dimension(175, Math.min(getViewCount() * fm.getHeight(), 500));
 	}
 
 	@Override
@@ -798,8 +840,8 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 
 	private void correctSelect(TreeNode n) {
 		resetVector();
-		if ((selectedNode != null) && (!ltree.v.contains(selectedNode))) {
-			changeSelection(n, ltree.v.indexOf(n));
+		if ((selectedNode != null) && (getIndex(selectedNode) < 0)) {
+			changeSelection(n, getIndex(n));
 			Event event = new Event(this, 0, null);
 			sendActionEvent(event);
 		}
@@ -809,6 +851,9 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 		if (!node.isExpandable()) {
 			return false;
 		}
+		if (node.pending) {
+			return true; // its children are not known yet
+		}
 		if (node.child == null) {
 			return false;
 		}
@@ -971,14 +1016,14 @@ class SymTree extends Panel implements ScrollArea, ScrollObject {
 		}
 
 		int pg = lines + index;
-		int max = ltree.v.size();
+		int max = getViewCount();
 		if (pg >= max) {
 			pg = max - 1;
 		}
 		if (pg < 0) {
 			pg = 0;
 		}
-		changeSelection(ltree.v.get(pg), pg);
+		changeSelection(ltree.getViewNode(pg), pg);
 		repaint();
 		vscroll(lines);
 	}
@@ -21,29 +21,50 @@ import java.awt.Component;
 import java.awt.Image;
 import java.awt.MediaTracker;
 import java.awt.Toolkit;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ToolkitResolver implements ImageResolver {
 	private final Toolkit kit;
+	private final Map<String, Image> loaded = new HashMap<>(); // images already waited for
+	private MediaTracker tracker; // made for the first listener, serves all images
+	private int nextId;
 
 	public ToolkitResolver() {
 		kit = Toolkit.getDefaultToolkit();
 	}
 
-	public Image getImage(String str, Component listener) {
-		Image i = kit.getImage(str);
-		MediaTracker track = new MediaTracker(listener);
+	/**
+	 * Returns the image after waiting until it is loaded. Every image is loaded once; later calls
+	 * return the same one.
+	 */
+	public synchronized Image getImage(String str, Component listener) {
+		Image i = loaded.get(str);
+		if (i != null) {
+			return i;
+		}
+		i = kit.getImage(str);
+		if (tracker == null) {
+			tracker = new MediaTracker(listener);
+		}
+		int id = nextId++;
+		tracker.addImage(i, id);
 		try {
-			track.addImage(i, 0);
-			track.waitForID(0);
+			tracker.waitForID(id);
+			loaded.put(str, i);
 		}
 		catch (Exception e) {
-			i = null;
+			return null;
+		}
+		finally {
+			tracker.removeImage(i, id);
 		}
 		return i;
 	}
 
 	@Override
-	public Image getImage(String str) {
-		return kit.getImage(str);
+	public synchronized Image getImage(String str) {
+		Image i = loaded.get(str);
+		return i != null ? i : kit.getImage(str);
 	}
 }
@@ -20,31 +20,53 @@ package org.zaval.awt.peer;
 import java.awt.Image;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 
+import org.zaval.awt.ChildRows;
 import org.zaval.awt.ImageResolver;
+import org.zaval.awt.LevelTree;
 
 public class TreeNode {
 	private ImageResolver imgres;
+	private LevelTree owner; // tree to tell about changes of what is viewable and how wide
 
 	public TreeNode sibling;
 	public TreeNode child;
+	public TreeNode lastChild; // kept by the tree, so that appending a child does not walk the siblings
 	public TreeNode parent;
 	public final String text;
-	private String nameCollImage;
-	private String nameExpImage;
-	private Image collapsedImage;
-	private Image expandedImage;
+	private NodeImages images; // shared with all nodes using the same resolver and image names
 	public int depth = -1;
+	// kept by the owner: viewable rows and widest row of the subtree, with the node itself, and the
+	// node's slot in the parent's childRows
+	public int rows;
+	public int widest;
+	public int slot = -1;
+	public ChildRows childRows;
 	private boolean isExpanded;
 	public int numberOfChildren;
+	public int markedDescendants; // descendants carrying a mark (e.g. an indicator), kept by the owner
 	private int contextMenu = -1;
 	private final Map<String, Object> property = new HashMap<>();
 	public boolean hidden;
+	public boolean pending; // has children that the tree's NodeSource has not created yet
 	public String caption;
 	private Image indicator;
 
 	public void setResolver(ImageResolver imgres) {
 		this.imgres = imgres;
+		images = NodeImages.of(imgres, images.collapsedName, images.expandedName);
+	}
+
+	public void setOwner(LevelTree owner) {
+		this.owner = owner;
+	}
+
+	private void viewChanged() {
+		if (owner != null) {
+			owner.nodeChanged(this);
+		}
 	}
 
 	public TreeNode(String text) {
@@ -55,8 +77,7 @@ public class TreeNode {
 		this.text = text;
 		this.sibling = null;
 		this.child = null;
-		this.nameCollImage = nameCollImage;
-		this.nameExpImage = nameExpImage;
+		this.images = NodeImages.of(null, nameCollImage, nameExpImage);
 
 		numberOfChildren = 0;
 		caption = null;
@@ -75,17 +96,21 @@ public class TreeNode {
 	}
 
 	public boolean isExpandable() {
-		return !hidden && (child != null);
+		return !hidden && ((child != null) || pending);
 	}
 
 	public void expand() {
-		if (isExpandable()) {
+		if (isExpandable() && !isExpanded) {
 			isExpanded = true;
+			viewChanged();
 		}
 	}
 
 	public void collapse() {
-		isExpanded = false;
+		if (isExpanded) {
+			isExpanded = false;
+			viewChanged();
+		}
 	}
 
 	public void toggle() {
@@ -98,42 +123,38 @@ public class TreeNode {
 	}
 
 	public Image getImage() {
-		return ((isExpanded && (expandedImage != null)) ? expandedImage : collapsedImage);
+		Image expandedImage = images.getExpanded();
+		return ((isExpanded && (expandedImage != null)) ? expandedImage : images.getCollapsed());
 	}
 
 	public Image getExpandedImage() {
 		loadImages();
-		return (expandedImage != null) ? expandedImage : collapsedImage;
+		Image expandedImage = images.getExpanded();
+		return (expandedImage != null) ? expandedImage : images.getCollapsed();
 	}
 
 	public Image getCollapsedImage() {
 		loadImages();
-		return collapsedImage;
+		return images.getCollapsed();
 	}
 
 	private void loadImages() {
-		if (imgres == null) {
-			return;
-		}
-		if ((nameCollImage != null) && (collapsedImage == null)) {
-			collapsedImage = imgres.getImage(nameCollImage);
-		}
-		if ((nameExpImage != null) && (expandedImage == null)) {
-			expandedImage = imgres.getImage(nameExpImage);
+		if (imgres != null) {
+			images.resolve(imgres); // images is keyed by imgres, see setResolver
 		}
 	}
 
 	public void setExpandedImage(String image) {
-		this.nameCollImage = image;
-		if ((image != null) && (imgres != null)) {
-			this.collapsedImage = imgres.getImage(nameCollImage);
+		images = NodeImages.of(imgres, image, images.expandedName);
+		if (image != null) {
+			loadImages();
 		}
 	}
 
 	public void setCollapsedImage(String image) {
-		this.nameExpImage = image;
-		if ((image != null) && (imgres != null)) {
-			this.expandedImage = imgres.getImage(nameExpImage);
+		images = NodeImages.of(imgres, images.collapsedName, image);
+		if (image != null) {
+			loadImages();
 		}
 	}
 
@@ -166,7 +187,10 @@ public class TreeNode {
 	}
 
 	public void setHide(boolean b) {
-		hidden = b;
+		if (hidden != b) {
+			hidden = b;
+			viewChanged();
+		}
 	}
 
 	public boolean getHide() {
@@ -174,15 +198,74 @@ public class TreeNode {
 	}
 
 	public void setIndicator(String name) {
+		Image old = indicator;
 		if ((name == null) || (imgres == null)) {
 			indicator = null;
 		}
 		else {
 			indicator = imgres.getImage(name);
 		}
+		if (indicator != old) {
+			viewChanged(); // changes the width of the view
+		}
 	}
 
 	public Image getIndicator() {
 		return indicator;
 	}
+
+	/**
+	 * Image names and the images resolved from them. There is one instance per resolver and pair of
+	 * names, so a tree of any size resolves each image once and its nodes hold a single reference,
+	 * while nodes of different resolvers never see each other's images.
+	 */
+	private static final class NodeImages {
+		// resolvers are weak keys: only the last one used is held strongly, until another comes
+		private static final Map<ImageResolver, Map<String, NodeImages>> shared = new WeakHashMap<>();
+		private static NodeImages last; // nodes mostly come in runs with the same images
+		private static ImageResolver lastResolver;
+
+		final String collapsedName;
+		final String expandedName;
+		private Image collapsed;
+		private Image expanded;
+
+		private NodeImages(String collapsedName, String expandedName) {
+			this.collapsedName = collapsedName;
+			this.expandedName = expandedName;
+		}
+
+		static synchronized NodeImages of(ImageResolver imgres, String collapsedName, String expandedName) {
+			if ((last == null) || (lastResolver != imgres) || !Objects.equals(last.collapsedName, collapsedName)
+				|| !Objects.equals(last.expandedName, expandedName)) {
+				last = shared.computeIfAbsent(imgres, r -> new HashMap<>())
+					.computeIfAbsent(collapsedName + '\0' + expandedName, k -> new NodeImages(collapsedName, expandedName));
+				lastResolver = imgres;
+			}
+			return last;
+		}
+
+		/**
+		 * Resolves the images not resolved yet; one the resolver could not give (e.g. not loaded
+		 * yet) is asked for again on the next call.
+		 *
+		 * @param imgres the resolver this instance was made for
+		 */
+		synchronized void resolve(ImageResolver imgres) {
+			if ((collapsed == null) && (collapsedName != null)) {
+				collapsed = imgres.getImage(collapsedName);
+			}
+			if ((expanded == null) && (expandedName != null)) {
+				expanded = imgres.getImage(expandedName);
+			}
+		}
+
+		synchronized Image getCollapsed() {
+			return collapsed;
+		}
+
+		synchronized Image getExpanded() {
+			return expanded;
+		}
+	}
 }
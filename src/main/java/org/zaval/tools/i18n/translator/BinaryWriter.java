@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.zaval.util.BinaryResourceBundle;
+
+/**
+ * Writes a bundle set as a binary bundle, to be read at run time with {@link BinaryResourceBundle},
+ * which also describes the layout.
+ */
+class BinaryWriter {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final BundleSet set;
+	private final List<String> strings = new ArrayList<>();
+	private final Map<String, Integer> numbers = new HashMap<>();
+
+	BinaryWriter(BundleSet set) {
+		this.set = set;
+	}
+
+	/**
+	 * @param langs languages to write, or null for all of them; the base language of the set is
+	 *        always written, as column 0 is what the other languages fall back on
+	 */
+	void write(String fileName, String... langs) throws IOException {
+		strings.clear();
+		numbers.clear();
+
+		List<String> columns = new ArrayList<>();
+		for (int j = 0; j < set.getLangCount(); ++j) {
+			String lang = set.getLanguage(j).getLangId();
+			if ((j == 0) || (langs == null) || contains(langs, lang)) {
+				columns.add(lang);
+			}
+		}
+		int keyCount = set.getItemCount();
+		BundleItem[] items = new BundleItem[keyCount];
+		for (int i = 0; i < keyCount; ++i) {
+			items[i] = set.getItem(i);
+		}
+		Arrays.sort(items, (a, b) -> a.getId().compareTo(b.getId()));
+
+		int[] langIds = new int[columns.size()];
+		for (int j = 0; j < langIds.length; ++j) {
+			langIds[j] = number(columns.get(j));
+		}
+		int[] keys = new int[keyCount];
+		for (int i = 0; i < keyCount; ++i) {
+			keys[i] = number(items[i].getId());
+		}
+		int[] values = new int[columns.size() * keyCount];
+		for (int j = 0; j < columns.size(); ++j) {
+			String lang = columns.get(j);
+			for (int i = 0; i < keyCount; ++i) {
+				String value = items[i].getTranslation(lang);
+				values[(j * keyCount) + i] = value == null ? -1 : number(value);
+			}
+		}
+
+		// a reader may map the file at any time, so it must never see a partly written one
+		BundleManager.writeAtomically(fileName, file -> {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+			out.writeInt(BinaryResourceBundle.MAGIC);
+			out.writeInt(BinaryResourceBundle.VERSION);
+			out.writeInt(langIds.length);
+			writeInts(out, langIds);
+			out.writeInt(keyCount);
+			out.writeInt(strings.size());
+			int offset = 0;
+			out.writeInt(offset);
+			for (String s : strings) {
+				offset += s.length();
+				out.writeInt(offset);
+			}
+			writeInts(out, keys);
+			writeInts(out, values);
+			for (String s : strings) {
+				for (int i = 0; i < s.length(); ++i) {
+					out.writeChar(s.charAt(i));
+				}
+			}
+			out.flush();
+		});
+	}
+
+	private int number(String s) {
+		Integer res = numbers.get(s);
+		if (res == null) {
+			res = strings.size();
+			strings.add(s);
+			numbers.put(s, res);
+		}
+		return res;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+		for (int v : a) {
+			out.writeInt(v);
+		}
+	}
+
+	private static boolean contains(String[] langs, String lang) {
+		for (String s : langs) {
+			if ((s != null) && s.equalsIgnoreCase(lang)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
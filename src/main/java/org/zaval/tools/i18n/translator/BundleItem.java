@@ -17,17 +17,20 @@
 
 package org.zaval.tools.i18n.translator;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Objects;
 import java.util.Set;
 
 class BundleItem {
 	private final String identifier;
-	private final Map<String, String> translations = new HashMap<>();
+	private final TranslationStore store;
+	private int slot;
 	private String comment;
 
-	BundleItem(String id) {
+	BundleItem(String id, TranslationStore store) {
 		identifier = id;
+		this.store = store;
+		slot = store.allocate(id);
 	}
 
 	String getId() {
@@ -35,22 +38,47 @@ class BundleItem {
 	}
 
 	String getTranslation(String lng) {
-		return translations.get(lng);
+		return slot < 0 ? null : store.get(slot, lng);
 	}
 
 	String getComment() {
 		return comment;
 	}
 
+	/**
+	 * Comments are written to every language file, so a change marks all languages dirty.
+	 */
 	void setComment(String s) {
-		comment = s;
+		if (!Objects.equals(comment, s)) {
+			comment = s;
+			store.touchAll();
+		}
 	}
 
 	void setTranslation(String lng, String txt) {
-		translations.put(lng, txt);
+		if (slot >= 0) {
+			store.put(slot, lng, txt);
+		}
+	}
+
+	/**
+	 * @return one of the TranslationStore completeness states for the tracked languages
+	 */
+	int getCompleteness() {
+		return slot < 0 ? TranslationStore.ABSENT : store.getState(slot);
 	}
 
 	Set<String> getLanguages() {
-		return translations.keySet();
+		return slot < 0 ? Collections.emptySet() : store.getLanguages(slot);
+	}
+
+	void release() {
+		if (comment != null) {
+			store.touchAll();
+		}
+		if (slot >= 0) {
+			store.release(slot);
+			slot = -1;
+		}
 	}
 }
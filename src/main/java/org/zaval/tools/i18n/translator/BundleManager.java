@@ -17,20 +17,39 @@
 
 package org.zaval.tools.i18n.translator;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
-import java.io.RandomAccessFile;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.stream.Collectors;
 
 class BundleManager {
+	private static final long MAP_WINDOW = 1L << 26;
+	private static final int TEXT_BUFFER = 1 << 16;
+	private static final int STORE_BUFFER = 1 << 16;
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
 	private final BundleSet set;
 
 	BundleManager() {
@@ -42,8 +61,15 @@ class BundleManager {
 	}
 
 	BundleManager(String baseFileName) throws IOException {
+		this(baseFileName, false);
+	}
+
+	/**
+	 * @param parallel parse every locale file of the set concurrently and merge them once all are read
+	 */
+	BundleManager(String baseFileName, boolean parallel) throws IOException {
 		set = new BundleSet();
-		readResources(baseFileName);
+		readResources(baseFileName, parallel);
 	}
 
 	BundleSet getBundle() {
@@ -117,166 +143,321 @@ class BundleManager {
 		return in2 >= 0 ? fn.substring(in2 + 1) : "en";
 	}
 
-	private void readResources(String baseFileName) throws IOException {
+	private void readResources(String baseFileName, boolean parallel) throws IOException {
 		String dir = dirName(baseFileName);
 		String ext = extName(baseFileName);
 		baseFileName = baseName(baseFileName);
 
-		for (String fn : getResFiles(dir, baseFileName, ext)) {
-			readResource(dir + fn, determineLanguage(fn));
+		List<String> files = getResFiles(dir, baseFileName, ext);
+		if (!parallel || (files.size() < 2)) {
+			for (String fn : files) {
+				readResource(dir + fn, determineLanguage(fn));
+			}
+			set.clearDirty();
+			return;
+		}
+
+		List<StagedResource> staged;
+		try {
+			staged = files.parallelStream().map(fn -> stageResource(dir + fn, determineLanguage(fn))).collect(Collectors.toList());
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		// merge in directory order, so the result is the same as reading the files one by one
+		for (int j = 0; j < files.size(); ++j) {
+			String fn = files.get(j);
+			String lang = determineLanguage(fn);
+			startLanguage(lang, dir + fn);
+			staged.get(j).mergeTo(toBundle(lang));
+		}
+		set.resort();
+		set.clearDirty();
+	}
+
+	private StagedResource stageResource(String fullName, String lang) {
+		StagedResource staging = new StagedResource();
+		try {
+			readResource(fullName, staging);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
+		return staging;
 	}
 
 	private void readResource(String fullName, String lang) throws IOException {
-		List<String> lines = getLines(fullName);
-		proceedLines(lines, lang, fullName);
+		startLanguage(lang, fullName);
+		readResource(fullName, toBundle(lang));
 	}
 
-	private void readResource(InputStream in, String lang) throws IOException {
-		List<String> lines = getLines(in);
-		proceedLines(lines, lang, null);
+	private void readResource(String fullName, ResourceSink target) throws IOException {
+		if (fullName.endsWith(TranslatorConstants.RES_EXTENSION)) {
+			try (BufferedReader in = new BufferedReader(new FileReader(fullName))) {
+				readProperties(in, target);
+			}
+		}
+		else {
+			readUnicode(fullName, target);
+		}
+	}
+
+	private void readResource(InputStream xin, String lang) throws IOException {
+		startLanguage(lang, null);
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(xin))) {
+			readProperties(in, toBundle(lang));
+		}
+	}
+
+	private ResourceSink toBundle(String lang) {
+		return (key, value, comment) -> {
+			BundleItem bi = set.addKey(key);
+			bi.setTranslation(lang, value);
+			bi.setComment(comment);
+		};
 	}
 
-	private void proceedLines(List<String> lines, String lang, String fullName) {
+	private void startLanguage(String lang, String fullName) {
 		fullName = fullName != null ? fullName : "tmp_" + lang;
 		set.addLanguage(lang);
 		set.getLanguage(lang).setLangFile(fullName);
+	}
+
+	/**
+	 * Reads a .properties stream line by line: continuation lines are glued, escapes are decoded
+	 * and the key/value pair goes straight into the bundle set, so no copy of the whole file is kept.
+	 */
+	private void readProperties(BufferedReader in, ResourceSink target) throws IOException {
+		StringBuilder buf = new StringBuilder();
 		String lastComment = null;
-		for (String line : lines) {
+		String line;
+		while ((line = in.readLine()) != null) {
 			line = line.trim();
-			if (line.isEmpty()) {
-				continue;
-			}
-			if (line.startsWith("#")) {
-				lastComment = line.substring(1);
-				continue;
+			while (line.endsWith("\\")) {
+				String line2 = in.readLine();
+				if (line2 == null) {
+					break;
+				}
+				line = (line.substring(0, line.length() - 1) + line2).trim();
 			}
+			buf.setLength(0);
+			fromEscape(line, buf);
+			lastComment = proceedLine(buf, lastComment, target);
+		}
+	}
 
-			StringTokenizer st = new StringTokenizer(line, "=", true); // key = value
-			if (st.countTokens() < 2) {
-				continue; // syntax error, ignored
+	/**
+	 * Handles one decoded line and returns the comment to attach to the next key.
+	 */
+	private String proceedLine(StringBuilder line, String lastComment, ResourceSink target) {
+		int start = 0;
+		int end = line.length();
+		while ((start < end) && (line.charAt(start) <= ' ')) {
+			start++;
+		}
+		while ((end > start) && (line.charAt(end - 1) <= ' ')) {
+			end--;
+		}
+		if (start == end) {
+			return lastComment;
+		}
+		if (line.charAt(start) == '#') {
+			return line.substring(start + 1, end);
+		}
+
+		int eq = line.indexOf("=", start); // key = value
+		if ((eq < 0) || (eq >= end)) {
+			return lastComment; // syntax error, ignored
+		}
+		String dname = line.substring(start, eq).trim();
+		if (dname.isEmpty()) {
+			return lastComment; // syntax error, ignored
+		}
+		String value = line.substring(eq + 1, end);
+
+		target.put(dname, value, lastComment);
+		return null;
+	}
+
+	/**
+	 * Opens a file written in UTF-16 (either byte order) or UTF-8, telling them apart by the byte
+	 * order mark. Files without one are taken as UTF-8.
+	 */
+	static Reader openText(String fileName) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(fileName), TEXT_BUFFER);
+		try {
+			in.mark(3);
+			int b0 = in.read();
+			int b1 = in.read();
+			Charset charset = StandardCharsets.UTF_8;
+			if ((b0 == 0xFE) && (b1 == 0xFF)) {
+				charset = StandardCharsets.UTF_16BE;
 			}
-			String dname = st.nextToken().trim();
-			st.nextToken(); // '='
-			String value = "";
-			if (st.hasMoreTokens()) {
-				value = st.nextToken("");
+			else if ((b0 == 0xFF) && (b1 == 0xFE)) {
+				charset = StandardCharsets.UTF_16LE;
 			}
-
-			BundleItem bi = set.getItem(dname);
-			if (bi == null) {
-				bi = set.addKey(dname);
+			else if ((b0 != 0xEF) || (b1 != 0xBB) || (in.read() != 0xBF)) {
+				in.reset();
 			}
-			bi.setTranslation(lang, value);
-			bi.setComment(lastComment);
-			lastComment = null;
+			return new InputStreamReader(in, charset);
+		}
+		catch (IOException e) {
+			in.close();
+			throw e;
 		}
-		set.resort();
 	}
 
-	private List<String> getLines(String fileName) throws IOException {
-		List<String> res = new ArrayList<>();
-		if (fileName.endsWith(TranslatorConstants.RES_EXTENSION)) {
-			try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
-				String line;
-				while ((line = in.readLine()) != null) {
-					for (;;) {
-						line = line.trim();
-						if (line.endsWith("\\")) {
-							String line2 = in.readLine();
-							if (line2 != null) {
-								line = line.substring(0, line.length() - 1) + line2;
-							}
-							else {
-								break;
-							}
+	/**
+	 * Reads a UCS-2 resource file through a memory mapping, decoding whole chunks of characters at
+	 * once. The text is little-endian unless a byte-swapped byte order mark is met.
+	 */
+	private void readUnicode(String fileName, ResourceSink target) throws IOException {
+		StringBuilder line = new StringBuilder();
+		StringBuilder buf = new StringBuilder();
+		String lastComment = null;
+		char[] chunk = new char[8192];
+		boolean swap = false;
+		try (FileChannel in = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long size = in.size() & ~1L; // an odd trailing byte never makes a character
+			for (long pos = 0; pos < size;) {
+				long len = Math.min(size - pos, MAP_WINDOW);
+				CharBuffer chars = in.map(FileChannel.MapMode.READ_ONLY, pos, len).order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+				pos += len;
+				while (chars.hasRemaining()) {
+					int n = Math.min(chunk.length, chars.remaining());
+					chars.get(chunk, 0, n);
+					for (int j = 0; j < n; j++) {
+						char ch = swap ? Character.reverseBytes(chunk[j]) : chunk[j];
+						if (ch == 0xFFFE) {
+							swap = true;
+							continue;
+						}
+						if ((ch == 0x0D) || (ch == 0xFEFF) || (ch == 0xFFFF)) {
+							continue;
+						}
+						if (ch != 0x0A) {
+							line.append(ch);
 						}
 						else {
-							break;
+							buf.setLength(0);
+							fromEscape(line, buf);
+							lastComment = proceedLine(buf, lastComment, target);
+							line.setLength(0);
 						}
 					}
-					res.add(fromEscape(line));
 				}
 			}
 		}
-		else {
-			try (RandomAccessFile in = new RandomAccessFile(fileName, "r")) {
-				StringBuilder sb = new StringBuilder();
-				int factor1 = 1;
-				for (int factor2 = 256;;) {
-					if ((in.length() - in.getFilePointer()) == 0) {
-						break;
-					}
-					int i = (in.readUnsignedByte() * factor1) + (in.readUnsignedByte() * factor2);
-					if (i == 0xFFFE) {
-						factor1 = 256;
-						factor2 = 1;
-					}
-					if ((i != 0x0D) && (i != 0xFFFE) && (i != 0xFEFF) && (i != 0xFFFF)) {
-						if (i != 0x0A) {
-							sb.append((char) i);
-						}
-						else {
-							res.add(fromEscape(sb.toString()));
-							sb.setLength(0);
-						}
-					}
+	}
+
+	/**
+	 * Writes the lines as a .properties file: ASCII only, with '\n', '\\' and non-ASCII chars as
+	 * \\uXXXX escapes and '\r' dropped. Escapes go straight into one byte buffer.
+	 */
+	private static void writeProperties(List<String> lines, OutputStream out) throws IOException {
+		byte[] buf = new byte[STORE_BUFFER];
+		int limit = buf.length - Math.max(6, LINE_SEPARATOR.length);
+		int pos = 0;
+		for (String line : lines) {
+			for (int i = 0; i < line.length(); i++) {
+				if (pos > limit) {
+					out.write(buf, 0, pos);
+					pos = 0;
+				}
+				char ch = line.charAt(i);
+				if (ch == '\r') {
+					continue;
+				}
+				if ((ch < 128) && (ch != '\n') && (ch != '\\')) {
+					buf[pos++] = (byte) ch;
 				}
+				else {
+					buf[pos++] = '\\';
+					buf[pos++] = 'u';
+					buf[pos++] = HEX_DIGITS[(ch >> 12) & 15];
+					buf[pos++] = HEX_DIGITS[(ch >> 8) & 15];
+					buf[pos++] = HEX_DIGITS[(ch >> 4) & 15];
+					buf[pos++] = HEX_DIGITS[ch & 15];
+				}
+			}
+			if (pos > limit) {
+				out.write(buf, 0, pos);
+				pos = 0;
 			}
+			System.arraycopy(LINE_SEPARATOR, 0, buf, pos, LINE_SEPARATOR.length);
+			pos += LINE_SEPARATOR.length;
 		}
-		return res;
+		out.write(buf, 0, pos);
 	}
 
-	private List<String> getLines(InputStream xin) throws IOException {
-		List<String> res = new ArrayList<>();
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(xin))) {
-			String line;
-			while ((line = in.readLine()) != null) {
-				for (;;) {
-					line = line.trim();
-					if (line.endsWith("\\")) {
-						String line2 = in.readLine();
-						if (line2 != null) {
-							line = line.substring(0, line.length() - 1) + line2;
-						}
-						else {
-							break;
-						}
-					}
-					else {
-						break;
-					}
+	/**
+	 * Writes the lines as a little-endian UTF-16 file with a byte order mark; line feeds inside
+	 * lines are escaped.
+	 */
+	private static void writeUnicode(List<String> lines, OutputStream out) throws IOException {
+		byte[] buf = new byte[STORE_BUFFER];
+		int limit = buf.length - 12;
+		int pos = 0;
+		buf[pos++] = (byte) 0xFF;
+		buf[pos++] = (byte) 0xFE;
+		for (String s : lines) {
+			for (int k = 0; k < s.length(); k++) {
+				if (pos > limit) {
+					out.write(buf, 0, pos);
+					pos = 0;
 				}
-				res.add(fromEscape(line));
+				char ch = s.charAt(k);
+				if (ch == '\n') {
+					pos = putUnicode(buf, pos, "\\u000a");
+				}
+				else {
+					buf[pos++] = (byte) ch;
+					buf[pos++] = (byte) (ch >> 8);
+				}
+			}
+			if (pos > limit) {
+				out.write(buf, 0, pos);
+				pos = 0;
 			}
+			pos = putUnicode(buf, pos, "\r\n");
 		}
-		return res;
+		out.write(buf, 0, pos);
 	}
 
-	private static String toEscape(String s) {
-		StringBuilder res = new StringBuilder();
-		for (int i = 0; i < s.length(); i++) {
-			char ch = s.charAt(i);
-			if (ch == '\r') {
-				continue;
+	private static int putUnicode(byte[] buf, int pos, String s) {
+		for (int k = 0; k < s.length(); k++) {
+			buf[pos++] = (byte) s.charAt(k);
+			buf[pos++] = 0;
+		}
+		return pos;
+	}
+
+	/**
+	 * Writes a file through a temporary file in the same directory, synced and then renamed over
+	 * the target, so that the target is either the old file or the complete new one.
+	 */
+	static void writeAtomically(String fn, StoreBody body) throws IOException {
+		File target = new File(fn).getAbsoluteFile();
+		File tmp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+		try {
+			try (FileOutputStream out = new FileOutputStream(tmp)) {
+				body.write(out);
+				out.getFD().sync();
 			}
-			if ((ch < 128) && (ch != '\n') && (ch != '\\')) {
-				res.append(ch);
+			try {
+				Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 			}
-			else {
-				res.append("\\u");
-				String hex = Integer.toHexString(ch);
-				for (int j = 0; j < (4 - hex.length()); j++) {
-					res.append("0");
-				}
-				res.append(hex);
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
 			}
 		}
-		return res.toString();
+		finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
 	}
 
-	private static String fromEscape(String s) {
-		StringBuilder res = new StringBuilder(s.length());
+	private static void fromEscape(CharSequence s, StringBuilder res) {
 		for (int i = 0; i < s.length(); i++) {
 			char ch = s.charAt(i);
 			if ((ch == '\\') && ((i + 1) >= s.length())) {
@@ -289,7 +470,7 @@ class BundleManager {
 			else {
 				switch (s.charAt(i + 1)) {
 					case 'u':
-						res.append((char) Integer.parseInt(s.substring(i + 2, i + 6), 16));
+						res.append((char) Integer.parseInt(s.subSequence(i + 2, i + 6).toString(), 16));
 						i += 5;
 						break;
 					case 'n':
@@ -309,7 +490,6 @@ class BundleManager {
 				}
 			}
 		}
-		return res.toString();
 	}
 
 	String replace(String line, String from, String to) {
@@ -333,11 +513,28 @@ class BundleManager {
 		return res.toString();
 	}
 
+	/**
+	 * Writes the files of the languages changed since they were read or stored, or that go to a new
+	 * file, concurrently.
+	 */
 	void store(String fileName) throws IOException {
-		int k = set.getLangCount();
-		for (int j = 0; j < k; ++j) {
-			LangItem lang = set.getLanguage(j);
-			store(lang.getLangId(), fileName);
+		set.resort(); // no lazy sorting from the writers
+		List<LangItem> langs = new ArrayList<>();
+		for (int j = 0; j < set.getLangCount(); ++j) {
+			langs.add(set.getLanguage(j));
+		}
+		try {
+			langs.parallelStream().forEach(lang -> {
+				try {
+					store(lang.getLangId(), fileName);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
 	}
 
@@ -354,6 +551,9 @@ class BundleManager {
 			}
 			tmpFn += TranslatorConstants.RES_EXTENSION;
 			fn = tmpFn;
+			if (!fn.equals(lang.getLangFile())) {
+				lang.setDirty(true);
+			}
 			lang.setLangFile(fn);
 		}
 
@@ -361,31 +561,57 @@ class BundleManager {
 			store(lng, "autosaved.properties");
 			return;
 		}
+		if (!lang.isDirty() && new File(fn).exists()) {
+			return;
+		}
 
-		List<String> lines = set.store(lang.getLangId());
-		if (fn.endsWith(TranslatorConstants.RES_EXTENSION)) {
-			try (PrintStream f = new PrintStream(new FileOutputStream(fn))) {
-				for (String line : lines) {
-					f.print(toEscape(line) + System.getProperty("line.separator"));
-				}
+		// cleared first, so that edits made while writing keep the language dirty
+		lang.setDirty(false);
+		try {
+			List<String> lines = set.store(lang.getLangId());
+			if (fn.endsWith(TranslatorConstants.RES_EXTENSION)) {
+				writeAtomically(fn, out -> writeProperties(lines, out));
+			}
+			else {
+				writeAtomically(fn, out -> writeUnicode(lines, out));
 			}
 		}
-		else {
-			try (FileOutputStream f = new FileOutputStream(fn)) {
-				f.write(0xFF);
-				f.write(0xFE);
-				for (String s : lines) {
-					s = replace(s, "\n", toEscape("\n"));
-					for (int k = 0; k < s.length(); k++) {
-						char ch = s.charAt(k);
-						f.write((ch) & 255);
-						f.write((ch) >> 8);
-					}
-					f.write(0x0D);
-					f.write(0x00);
-					f.write(0x0A);
-					f.write(0x00);
-				}
+		catch (IOException | RuntimeException e) {
+			lang.setDirty(true);
+			throw e;
+		}
+	}
+
+	/**
+	 * Produces the content of a file being stored; the stream is closed by the caller.
+	 */
+	interface StoreBody {
+		void write(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Receives the key/value pairs of one resource file in file order.
+	 */
+	private interface ResourceSink {
+		void put(String key, String value, String comment);
+	}
+
+	/**
+	 * Key/value pairs of one locale file, parsed aside and merged into the set later.
+	 */
+	private static class StagedResource implements ResourceSink {
+		private final List<String> entries = new ArrayList<>(); // key, value, comment triples
+
+		@Override
+		public void put(String key, String value, String comment) {
+			entries.add(key);
+			entries.add(value);
+			entries.add(comment);
+		}
+
+		void mergeTo(ResourceSink target) {
+			for (int i = 0; i < entries.size(); i += 3) {
+				target.put(entries.get(i), entries.get(i + 1), entries.get(i + 2));
 			}
 		}
 	}
@@ -18,6 +18,8 @@
 package org.zaval.tools.i18n.translator;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -27,9 +29,30 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 class BundleSet {
+	private static final int REPLACE_CHUNK = 4096; // items scanned by one task of a bulk replace
+
+	/**
+	 * A value changed by a bulk replace.
+	 */
+	static class Change {
+		final String key;
+		final String lang;
+		final String oldValue;
+		final String newValue;
+
+		Change(String key, String lang, String oldValue, String newValue) {
+			this.key = key;
+			this.lang = lang;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+	}
+
 	private final List<BundleItem> items = new ArrayList<>();
 	private final List<LangItem> lng = new ArrayList<>();
 	private final Map<String, BundleItem> nameCache = new HashMap<>();
+	private final TranslationStore store = new TranslationStore();
+	private boolean unsorted; // items were appended out of key order, sorted on next ordered access
 
 	private void addLanguage(String slng, String desc) {
 		if (getLanguage(slng) != null) {
@@ -37,6 +60,8 @@ class BundleSet {
 		}
 		LangItem newl = new LangItem(slng, desc);
 		lng.add(newl);
+		store.attach(newl);
+		store.track(slng, true);
 		correctFileName(newl);
 	}
 
@@ -69,6 +94,7 @@ class BundleSet {
 	}
 
 	BundleItem getItem(int idx) {
+		ensureSorted();
 		return items.get(idx);
 	}
 
@@ -77,20 +103,49 @@ class BundleSet {
 	}
 
 	int getItemIndex(String key) {
-		int k = getItemCount();
-		for (int j = k - 1; j >= 0; --j) {
-			BundleItem bi = getItem(j);
-			if (bi.getId().equals(key)) {
-				return j;
+		if (!nameCache.containsKey(key)) {
+			return -1;
+		}
+		int j = lowerBound(key);
+		return (j < items.size()) && items.get(j).getId().equals(key) ? j : -1;
+	}
+
+	/**
+	 * Returns the index of the first item whose key is not less than the given one. Keys sharing a
+	 * prefix form one run in the sorted list starting at this index.
+	 */
+	private int lowerBound(String key) {
+		ensureSorted();
+		int lo = 0;
+		int hi = items.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (items.get(mid).getId().compareTo(key) < 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
 			}
 		}
-		return -1;
+		return lo;
+	}
+
+	private List<BundleItem> prefixRange(String key) {
+		int from = lowerBound(key);
+		int to = from;
+		while ((to < items.size()) && items.get(to).getId().startsWith(key)) {
+			++to;
+		}
+		return items.subList(from, to);
 	}
 
 	BundleItem addKey(String key) {
 		BundleItem ask = getItem(key);
 		if (ask == null) {
-			ask = new BundleItem(key);
+			ask = new BundleItem(key, store);
+			if (!items.isEmpty() && (items.get(items.size() - 1).getId().compareTo(key) > 0)) {
+				unsorted = true;
+			}
 			items.add(ask);
 			nameCache.put(key, ask);
 		}
@@ -102,26 +157,153 @@ class BundleSet {
 		if (j >= 0) {
 			items.remove(j);
 		}
-		nameCache.remove(key);
+		BundleItem bi = nameCache.remove(key);
+		if (bi != null) {
+			bi.release();
+		}
 	}
 
 	List<BundleItem> getKeysBeginningWith(String key) {
-		return IntStream.range(0, getItemCount())
-			.mapToObj(this::getItem)
-			.filter(bi -> bi.getId().startsWith(key))
-			.collect(Collectors.toList());
+		return new ArrayList<>(prefixRange(key));
 	}
 
 	void removeKeysBeginningWith(String key) {
-		for (int j = 0; j < getItemCount(); ++j) {
-			BundleItem bi = getItem(j);
-			if (bi.getId().startsWith(key)) {
-				removeKey(bi.getId());
-				--j;
+		List<BundleItem> range = prefixRange(key);
+		for (BundleItem bi : range) {
+			nameCache.remove(bi.getId());
+			bi.release();
+		}
+		range.clear();
+	}
+
+	/**
+	 * Includes or excludes a language from the completeness counts, e.g. when it is hidden.
+	 */
+	void trackLanguage(String lang, boolean on) {
+		store.track(lang, on);
+	}
+
+	int getTrackedLangCount() {
+		return store.getTrackedCount();
+	}
+
+	/**
+	 * @return number of keys without a value in any tracked language
+	 */
+	int getMissingCount() {
+		return store.getMissingCount();
+	}
+
+	/**
+	 * @return number of keys translated to some of the tracked languages only
+	 */
+	int getPartialCount() {
+		return store.getPartialCount();
+	}
+
+	void setCompletenessListener(TranslationStore.Listener listener) {
+		store.setListener(listener);
+	}
+
+	/**
+	 * Computes the replacement of every match of the pattern in the given languages without touching
+	 * the set. Items (or the candidates found by the index) are scanned in parallel; the changes come
+	 * back in key order.
+	 */
+	List<Change> findReplacements(SearchPattern pattern, String to, boolean all, Collection<String> langs) {
+		List<BundleItem> candidates = findCandidates(pattern);
+		if (candidates == null) {
+			ensureSorted();
+		}
+		List<BundleItem> scope = candidates == null ? items : candidates;
+		int chunks = (scope.size() + REPLACE_CHUNK - 1) / REPLACE_CHUNK;
+		return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+			SearchPattern p = pattern.copy();
+			List<Change> res = new ArrayList<>();
+			int end = Math.min(scope.size(), (c + 1) * REPLACE_CHUNK);
+			for (int j = c * REPLACE_CHUNK; j < end; ++j) {
+				BundleItem bi = scope.get(j);
+				for (String lang : langs) {
+					String val = bi.getTranslation(lang);
+					if (p.matches(val)) {
+						String val2 = p.replace(val, to, all);
+						if (!val2.equals(val)) {
+							res.add(new Change(bi.getId(), lang, val, val2));
+						}
+					}
+				}
 			}
+			return res;
+		}).flatMap(List::stream).collect(Collectors.toList());
+	}
+
+	/**
+	 * Applies changes found by {@link #findReplacements}. Nothing is changed unless every key still
+	 * exists and holds the value the change was computed from.
+	 *
+	 * @throws IllegalStateException if the set was modified in between
+	 */
+	void applyChanges(List<Change> changes) {
+		for (Change ch : changes) {
+			BundleItem bi = getItem(ch.key);
+			if ((bi == null) || !ch.oldValue.equals(bi.getTranslation(ch.lang))) {
+				throw new IllegalStateException("Value of " + ch.key + "!" + ch.lang + " was changed");
+			}
+		}
+		for (Change ch : changes) {
+			getItem(ch.key).setTranslation(ch.lang, ch.newValue);
 		}
 	}
 
+	List<Change> replaceAll(SearchPattern pattern, String to, boolean all, Collection<String> langs) {
+		List<Change> changes = findReplacements(pattern, to, all, langs);
+		applyChanges(changes);
+		return changes;
+	}
+
+	/**
+	 * Keeps an index of the values so that searches for plain text need to look at a few candidate
+	 * items only.
+	 */
+	void setIndexed(boolean on) {
+		store.setIndexed(on);
+	}
+
+	/**
+	 * @return items that may have a value matching the pattern, in key order, or null when the index
+	 *         is off or can't narrow the search
+	 */
+	List<BundleItem> findCandidates(SearchPattern pattern) {
+		String text = pattern.getLiteral();
+		BitSet slots = text == null ? null : store.findCandidates(text);
+		if (slots == null) {
+			return null;
+		}
+		List<BundleItem> res = new ArrayList<>(slots.cardinality());
+		for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+			BundleItem bi = getItem(store.getKey(slot));
+			if (bi != null) {
+				res.add(bi);
+			}
+		}
+		res.sort(new BundleItemComparator());
+		return res;
+	}
+
+	List<String> getLangIds() {
+		return lng.stream().map(LangItem::getLangId).collect(Collectors.toList());
+	}
+
+	/**
+	 * Adds a translation read by an import, creating its key and language as needed.
+	 */
+	void putTranslation(String key, String lang, String value) {
+		if (getLanguage(lang) == null) {
+			addLanguage(lang);
+		}
+		addKey(key).setTranslation(lang, value);
+	}
+
 	void updateValue(String key, String lang, String value) {
 		BundleItem bi = getItem(key);
 		if (bi != null) {
@@ -162,6 +344,15 @@ class BundleSet {
 		return key + '=' + val;
 	}
 
+	/**
+	 * Marks all languages as matching their files, e.g. right after they were read.
+	 */
+	void clearDirty() {
+		for (LangItem lang : lng) {
+			lang.setDirty(false);
+		}
+	}
+
 	List<String> store(String lng) {
 		getLanguage(lng);
 		List<String> lines = new ArrayList<>();
@@ -203,7 +394,14 @@ class BundleSet {
 	}
 
 	public void resort() {
-		items.sort(new BundleItemComparator());
+		ensureSorted();
+	}
+
+	private void ensureSorted() {
+		if (unsorted) {
+			items.sort(new BundleItemComparator());
+			unsorted = false;
+		}
 	}
 
 	private static class BundleItemComparator implements Comparator<BundleItem> {
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Literals extracted from source files by earlier runs, so that unchanged files are not parsed again.
+ * <p>
+ * An entry is valid while the file keeps its size and modification time; when only the time
+ * changed, the file is read and its content hash decides. Entries are kept by absolute path, so one
+ * cache file serves any number of source trees. The file is a gzipped stream of
+ * <code>path, size, mtime, hash, count, (key, value)*</code> records; a count of -1 marks a file
+ * that could not be parsed.
+ */
+class ExtractionCache {
+	private static final int MAGIC = 0x4a524345; // "JRCE"
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_STRING = 1 << 26; // longer strings only come from broken files
+
+	static class Entry {
+		final String path;
+		final long size;
+		final long mtime;
+		final long hash;
+		final Map<String, String> table; // null if the file could not be parsed
+
+		Entry(String path, long size, long mtime, long hash, Map<String, String> table) {
+			this.path = path;
+			this.size = size;
+			this.mtime = mtime;
+			this.hash = hash;
+			this.table = table;
+		}
+	}
+
+	/**
+	 * Result of {@link ExtractionCache#lookup}: the cached entry if it is still valid, and the file's
+	 * content with its hash if it was read for the check (null and 0 otherwise).
+	 */
+	static class Lookup {
+		final Entry entry;
+		final byte[] content;
+		final long hash;
+
+		Lookup(Entry entry, byte[] content, long hash) {
+			this.entry = entry;
+			this.content = content;
+			this.hash = hash;
+		}
+	}
+
+	private final String fileName;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	ExtractionCache(String fileName) {
+		this.fileName = fileName;
+	}
+
+	static String getDefaultPath() {
+		return System.getProperty("user.home") + "/.jrc-editor.cache";
+	}
+
+	/**
+	 * Reads the cache file; a missing or unreadable file leaves the cache empty.
+	 */
+	void load() {
+		entries.clear();
+		File f = new File(fileName);
+		if (!f.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f), BUFFER_SIZE)))) {
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+				return;
+			}
+			for (int n = in.readInt(); n > 0; --n) {
+				String path = readString(in);
+				long size = in.readLong();
+				long mtime = in.readLong();
+				long hash = in.readLong();
+				int count = in.readInt();
+				Map<String, String> table = null;
+				if (count >= 0) {
+					// the count is not trusted with more memory than a few entries take
+					table = new LinkedHashMap<>(Math.min(count, BUFFER_SIZE) * 2);
+					for (int i = 0; i < count; ++i) {
+						String key = readString(in);
+						table.put(key, readString(in));
+					}
+				}
+				entries.put(path, new Entry(path, size, mtime, hash, table));
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			entries.clear(); // a broken cache only costs a full parse
+		}
+	}
+
+	/**
+	 * Replaces the entries under the root by the ones given and writes the cache file, the way bundle
+	 * files are stored, so that an interrupted save leaves the old cache in place.
+	 */
+	void update(String root, Collection<Entry> fresh) throws IOException {
+		String prefix = new File(root).getAbsolutePath() + File.separator;
+		entries.keySet().removeIf(path -> path.startsWith(prefix));
+		for (Entry e : fresh) {
+			entries.put(e.path, e);
+		}
+
+		BundleManager.writeAtomically(fileName, file -> {
+			GZIPOutputStream zip = new GZIPOutputStream(file, BUFFER_SIZE);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(zip));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			for (Entry e : entries.values()) {
+				writeString(out, e.path);
+				out.writeLong(e.size);
+				out.writeLong(e.mtime);
+				out.writeLong(e.hash);
+				if (e.table == null) {
+					out.writeInt(-1);
+					continue;
+				}
+				out.writeInt(e.table.size());
+				for (Map.Entry<String, String> kv : e.table.entrySet()) {
+					writeString(out, kv.getKey());
+					writeString(out, kv.getValue());
+				}
+			}
+			out.flush();
+			zip.finish();
+		});
+	}
+
+	/**
+	 * Checks the cached entry of a file; the content read for the check may be passed on to the
+	 * parser.
+	 */
+	Lookup lookup(String path, long size, long mtime) throws IOException {
+		Entry e = entries.get(path);
+		if ((e != null) && (e.size == size)) {
+			if (e.mtime == mtime) {
+				hits.incrementAndGet();
+				return new Lookup(e, null, 0);
+			}
+			byte[] content = Files.readAllBytes(new File(path).toPath());
+			long h = hash(content);
+			if (h == e.hash) {
+				hits.incrementAndGet();
+				return new Lookup(new Entry(path, size, mtime, e.hash, e.table), content, h);
+			}
+			misses.incrementAndGet();
+			return new Lookup(null, content, h);
+		}
+		misses.incrementAndGet();
+		return new Lookup(null, null, 0);
+	}
+
+	int getHitCount() {
+		return hits.get();
+	}
+
+	int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * 64-bit FNV-1a.
+	 */
+	static long hash(byte[] data) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : data) {
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Unlike writeUTF(), not limited to 64K bytes.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * Reads long strings in pieces, so that a broken length runs into the end of the file before
+	 * it takes more memory than the file has data.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if ((n < 0) || (n > MAX_STRING)) {
+			throw new IOException("Broken cache file");
+		}
+		if (n <= BUFFER_SIZE) {
+			byte[] b = new byte[n];
+			in.readFully(b);
+			return new String(b, StandardCharsets.UTF_8);
+		}
+		ByteArrayOutputStream res = new ByteArrayOutputStream(BUFFER_SIZE);
+		byte[] b = new byte[BUFFER_SIZE];
+		for (int left = n; left > 0; left -= b.length) {
+			int k = Math.min(left, b.length);
+			in.readFully(b, 0, k);
+			res.write(b, 0, k);
+		}
+		return new String(res.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
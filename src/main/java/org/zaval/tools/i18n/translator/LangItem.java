@@ -21,6 +21,7 @@ class LangItem {
 	private final String lng;
 	private final String desc;
 	private String fname;
+	private boolean dirty = true; // values differ from the language file
 
 	LangItem(String lng, String dsc) {
 		this.lng = lng;
@@ -42,4 +43,12 @@ class LangItem {
 	void setLangFile(String s) {
 		this.fname = s;
 	}
+
+	boolean isDirty() {
+		return dirty;
+	}
+
+	void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
 }
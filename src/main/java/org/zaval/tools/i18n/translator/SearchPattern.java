@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.util.Arrays;
+
+import org.apache.regexp.RE;
+import org.apache.regexp.RESyntaxException;
+
+/**
+ * Search criteria of a find/replace request, compiled once and then applied to any number of values.
+ * <p>
+ * Three kinds of criteria are supported: a regular expression, a wildcard mask where '*' stands for
+ * any run of characters and '?' for any single character (the mask must cover the whole value), and
+ * a plain substring, searched with a Horspool skip table. Instances keep matcher state and must not
+ * be shared between threads; use {@link #copy()} instead.
+ */
+class SearchPattern {
+	static final int EXACT = 0;
+	static final int MASK = 1;
+	static final int REGEX = 2;
+
+	private static final int SKIP_TABLE_SIZE = 256;
+
+	private final String criteria;
+	private final int kind;
+	private final boolean matchCase;
+
+	private RE re;
+	private char[] text; // folded substring
+	private int[] skip;
+	private char[][] segments; // mask pieces between '*'
+	private int[][] segmentSkips; // skip tables of the middle pieces without '?', else null
+	private boolean starred;
+
+	SearchPattern(String criteria, int kind, boolean matchCase) throws RESyntaxException {
+		this.criteria = criteria;
+		this.kind = kind;
+		this.matchCase = matchCase;
+		if (kind == REGEX) {
+			re = new RE(criteria, matchCase ? RE.MATCH_NORMAL : RE.MATCH_CASEINDEPENDENT);
+		}
+		else if (kind == MASK) {
+			compileMask();
+		}
+		else {
+			compileText();
+		}
+	}
+
+	String getCriteria() {
+		return criteria;
+	}
+
+	/**
+	 * @return plain text every matching value must contain (ignoring case), for index lookups; null
+	 *         when there is no such text
+	 */
+	String getLiteral() {
+		if (kind == EXACT) {
+			return criteria;
+		}
+		if (kind == MASK) {
+			String res = null;
+			for (String part : criteria.split("[*?]")) {
+				if ((res == null) || (part.length() > res.length())) {
+					res = part;
+				}
+			}
+			return res;
+		}
+		return null;
+	}
+
+	SearchPattern copy() {
+		try {
+			return new SearchPattern(criteria, kind, matchCase);
+		}
+		catch (RESyntaxException e) {
+			throw new IllegalStateException(e); // compiled once already
+		}
+	}
+
+	boolean matches(String value) {
+		if (value == null) {
+			return false;
+		}
+		if (kind == REGEX) {
+			return re.match(value);
+		}
+		if (kind == MASK) {
+			return matchMask(value);
+		}
+		return indexOf(value, 0) >= 0;
+	}
+
+	/**
+	 * Returns the value with the first (or every) match replaced, or the value itself when nothing
+	 * matched. Masks cover the whole value, so a matching value is replaced as a whole.
+	 */
+	String replace(String value, String to, boolean all) {
+		if (value == null) {
+			return null;
+		}
+		if (kind == REGEX) {
+			return re.subst(value, to, all ? RE.REPLACE_ALL : RE.REPLACE_FIRSTONLY);
+		}
+		if (kind == MASK) {
+			return matchMask(value) ? to : value;
+		}
+		int j = indexOf(value, 0);
+		if ((j < 0) || (text.length == 0)) {
+			return value;
+		}
+		StringBuilder res = new StringBuilder(value.length() + to.length());
+		int from = 0;
+		do {
+			res.append(value, from, j).append(to);
+			from = j + text.length;
+			j = all ? indexOf(value, from) : -1;
+		}
+		while (j >= 0);
+		return res.append(value, from, value.length()).toString();
+	}
+
+	private char fold(char c) {
+		return matchCase ? c : Character.toLowerCase(c);
+	}
+
+	private void compileText() {
+		int m = criteria.length();
+		text = new char[m];
+		for (int i = 0; i < m; ++i) {
+			text[i] = fold(criteria.charAt(i));
+		}
+		skip = skipTable(text);
+	}
+
+	private static int[] skipTable(char[] pat) {
+		int m = pat.length;
+		int[] res = new int[SKIP_TABLE_SIZE];
+		// chars sharing a bucket get the smallest of their shifts, which is always safe
+		Arrays.fill(res, Math.max(m, 1));
+		for (int i = 0; i < (m - 1); ++i) {
+			res[pat[i] & (SKIP_TABLE_SIZE - 1)] = m - 1 - i;
+		}
+		return res;
+	}
+
+	private int indexOf(String value, int from) {
+		if (text.length == 0) {
+			return from <= value.length() ? from : -1;
+		}
+		return indexOf(text, skip, value, from, value.length() - text.length);
+	}
+
+	/**
+	 * Horspool search for a non-empty folded pattern starting at a position from {@code from} to
+	 * {@code last}, both inclusive.
+	 */
+	private int indexOf(char[] pat, int[] table, String value, int from, int last) {
+		int m = pat.length;
+		for (int pos = from; pos <= last;) {
+			char c = fold(value.charAt(pos + m - 1));
+			if (c == pat[m - 1]) {
+				int i = m - 2;
+				while ((i >= 0) && (fold(value.charAt(pos + i)) == pat[i])) {
+					--i;
+				}
+				if (i < 0) {
+					return pos;
+				}
+			}
+			pos += table[c & (SKIP_TABLE_SIZE - 1)];
+		}
+		return -1;
+	}
+
+	private void compileMask() {
+		String[] parts = criteria.split("\\*", -1);
+		starred = parts.length > 1;
+		segments = new char[parts.length][];
+		segmentSkips = new int[parts.length][];
+		for (int i = 0; i < parts.length; ++i) {
+			segments[i] = parts[i].toCharArray();
+			for (int j = 0; j < segments[i].length; ++j) {
+				segments[i][j] = fold(segments[i][j]);
+			}
+			if ((i > 0) && (i < (parts.length - 1)) && !parts[i].isEmpty() && (parts[i].indexOf('?') < 0)) {
+				segmentSkips[i] = skipTable(segments[i]);
+			}
+		}
+	}
+
+	/**
+	 * The first piece is anchored at the start, the last one at the end, and every piece in between
+	 * is taken at its leftmost place: no backtracking is needed, since an earlier place never leaves
+	 * less room for the pieces that follow. Pieces without '?' are found with the Horspool search,
+	 * the others by trying each place in turn, so the worst case is still O(n·m) for a value of
+	 * length n and a mask of length m.
+	 */
+	private boolean matchMask(String value) {
+		int n = value.length();
+		char[] head = segments[0];
+		if (!starred) {
+			return (n == head.length) && matchAt(head, value, 0);
+		}
+		char[] tail = segments[segments.length - 1];
+		int end = n - tail.length;
+		if ((end < head.length) || !matchAt(head, value, 0) || !matchAt(tail, value, end)) {
+			return false;
+		}
+		int pos = head.length;
+		for (int i = 1; i < (segments.length - 1); ++i) {
+			char[] seg = segments[i];
+			int limit = end - seg.length;
+			if (segmentSkips[i] != null) {
+				pos = indexOf(seg, segmentSkips[i], value, pos, limit);
+				if (pos < 0) {
+					return false;
+				}
+			}
+			while ((pos <= limit) && !matchAt(seg, value, pos)) {
+				++pos;
+			}
+			if (pos > limit) {
+				return false;
+			}
+			pos += seg.length;
+		}
+		return true;
+	}
+
+	private boolean matchAt(char[] seg, String value, int at) {
+		for (int i = 0; i < seg.length; ++i) {
+			if ((seg[i] != '?') && (seg[i] != fold(value.charAt(at + i)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.zaval.tools.i18n.translator.generated.JavaParser;
+import org.zaval.tools.i18n.translator.generated.ParseException;
+import org.zaval.tools.i18n.translator.generated.TokenMgrError;
+
+/**
+ * Extracts string literals from every Java source under a directory. Files are parsed on a pool of
+ * workers, each with its own JavaParser; the per-file tables are then merged in path order, so the
+ * result does not depend on scheduling.
+ * <p>
+ * With an {@link ExtractionCache}, files that did not change since the cache was last updated are
+ * taken from it instead of being parsed again.
+ */
+class SourceExtractor {
+	private final int threads;
+	private int files;
+	private int failed;
+	private long millis;
+	private ExtractionCache cache;
+
+	SourceExtractor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	SourceExtractor(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	void setCache(ExtractionCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @return extracted values by key, sorted by key
+	 */
+	Map<String, String> extract(String dir) throws IOException {
+		long start = System.currentTimeMillis();
+		List<Path> sources;
+		try (Stream<Path> tree = Files.walk(Paths.get(dir))) {
+			sources = tree.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p)).sorted().collect(Collectors.toList());
+		}
+		List<ExtractionCache.Entry> parsed = parseAll(sources);
+
+		Map<String, String> res = new TreeMap<>();
+		failed = 0;
+		for (ExtractionCache.Entry e : parsed) {
+			if ((e == null) || (e.table == null)) {
+				++failed;
+			}
+			else {
+				merge(res, e.table);
+			}
+		}
+		if (cache != null) {
+			parsed.removeIf(Objects::isNull);
+			try {
+				cache.update(dir, parsed);
+			}
+			catch (IOException e) {
+				// the result is complete anyway, only the next run will be slower
+			}
+		}
+		files = sources.size();
+		millis = System.currentTimeMillis() - start;
+		return res;
+	}
+
+	int getFileCount() {
+		return files;
+	}
+
+	/**
+	 * @return number of files skipped because they could not be read or parsed
+	 */
+	int getFailedCount() {
+		return failed;
+	}
+
+	long getMillis() {
+		return millis;
+	}
+
+	String getReport() {
+		long rate = (files * 1000L) / Math.max(1, millis);
+		String res = files + " files (" + failed + " skipped) in " + millis + " ms, " + rate + " files/s";
+		if (cache != null) {
+			res += ", " + cache.getHitCount() + " unchanged, " + cache.getMissCount() + " parsed";
+		}
+		return res;
+	}
+
+	/**
+	 * Adds a table to the result the way JavaParser adds literals to its own table: a key already
+	 * taken by another value gets the first free "-N" suffix. A key whose suffix was given by the
+	 * parser of its file is renumbered rather than suffixed again; any other key keeps its full name.
+	 */
+	static void merge(Map<String, String> into, Map<String, String> table) {
+		for (Map.Entry<String, String> e : new TreeMap<>(table).entrySet()) {
+			String key = e.getKey();
+			String old = into.get(key);
+			if ((old != null) && !old.equals(e.getValue())) {
+				String base = suffixedBase(key, table);
+				if (base == null) {
+					base = key;
+				}
+				int i = 0;
+				while (into.containsKey(base + "-" + i)) {
+					++i;
+				}
+				key = base + "-" + i;
+			}
+			into.put(key, e.getValue());
+		}
+	}
+
+	/**
+	 * The parser only suffixes a key that is taken in its table, with the first free number; so a
+	 * key "k-N" it made comes with "k" and "k-0" to "k-(N-1)" in the same table.
+	 *
+	 * @return the key without the suffix the parser gave it, or null if it has none
+	 */
+	private static String suffixedBase(String key, Map<String, String> table) {
+		int j = key.lastIndexOf('-');
+		if ((j <= 0) || (j == (key.length() - 1)) || ((key.length() - j) > 10)) {
+			return null;
+		}
+		for (int i = j + 1; i < key.length(); ++i) {
+			if ((key.charAt(i) < '0') || (key.charAt(i) > '9')) {
+				return null;
+			}
+		}
+		String base = key.substring(0, j);
+		int n = Integer.parseInt(key.substring(j + 1));
+		if (!table.containsKey(base) || !key.equals(base + "-" + n)) {
+			return null; // not the parser's: missing base or leading zeros
+		}
+		for (int i = 0; i < n; ++i) {
+			if (!table.containsKey(base + "-" + i)) {
+				return null;
+			}
+		}
+		return base;
+	}
+
+	/**
+	 * @return an entry per source, null where the file could not be read
+	 */
+	private List<ExtractionCache.Entry> parseAll(List<Path> sources) throws IOException {
+		List<ExtractionCache.Entry> tables = new ArrayList<>(sources.size());
+		for (int j = 0; j < sources.size(); ++j) {
+			tables.add(null);
+		}
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int j = 0; j < threads; ++j) {
+				workers.add(pool.submit(() -> {
+					Worker worker = new Worker();
+					for (int k = next.getAndIncrement(); k < sources.size(); k = next.getAndIncrement()) {
+						try {
+							tables.set(k, worker.extract(sources.get(k)));
+						}
+						catch (IOException e) {
+							// unreadable, neither parsed nor cached
+						}
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		finally {
+			pool.shutdown();
+		}
+		return tables;
+	}
+
+	/**
+	 * Extracts the literals of files one after another, reusing one parser.
+	 */
+	private class Worker {
+		private JavaParser parser;
+
+		/**
+		 * @return the entry of the file, with a null table if it could not be parsed
+		 */
+		ExtractionCache.Entry extract(Path src) throws IOException {
+			String path = src.toAbsolutePath().toString();
+			BasicFileAttributes attrs = Files.readAttributes(src, BasicFileAttributes.class);
+			long size = attrs.size();
+			long mtime = attrs.lastModifiedTime().toMillis();
+			byte[] data = null;
+			long hash = 0;
+			if (cache != null) {
+				ExtractionCache.Lookup hit = cache.lookup(path, size, mtime);
+				if (hit.entry != null) {
+					return hit.entry;
+				}
+				data = hit.content;
+				hash = hit.hash;
+			}
+			if (data == null) {
+				data = Files.readAllBytes(src);
+				hash = ExtractionCache.hash(data);
+			}
+			Map<String, String> table = null;
+			try (InputStream in = new ByteArrayInputStream(data)) {
+				if (parser == null) {
+					parser = new JavaParser(in);
+					table = parser.parse();
+				}
+				else {
+					table = parser.parse(in);
+				}
+			}
+			catch (ParseException | TokenMgrError | RuntimeException e) {
+				parser = null; // may be left in a broken state; the file counts as failed
+			}
+			return new ExtractionCache.Entry(path, size, mtime, hash, table);
+		}
+	}
+}
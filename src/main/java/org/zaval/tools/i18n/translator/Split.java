@@ -17,18 +17,17 @@
 
 package org.zaval.tools.i18n.translator;
 
-import org.zaval.tools.i18n.translator.generated.JavaParser;
-import org.zaval.tools.i18n.translator.generated.UtfParser;
-
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
+
+import org.zaval.tools.i18n.translator.generated.JavaParser;
+import org.zaval.tools.i18n.translator.generated.UtfParser;
 
 public class Split { // NO_UCD (unused code)
 	private BundleManager bundle = new BundleManager();
@@ -61,7 +60,7 @@ public class Split { // NO_UCD (unused code)
 
 	private void readResources(String fileName, boolean part) throws Exception {
 		try {
-			BundleManager bundle2 = new BundleManager(fileName);
+			BundleManager bundle2 = new BundleManager(fileName, true);
 			join(bundle2, part);
 		}
 		catch (Exception e) {
@@ -85,10 +84,11 @@ public class Split { // NO_UCD (unused code)
 		System.err.println(fileName + ":" + e.getMessage());
 	}
 
-	private void onGenCode(String fileName) {
+	private void onGenCode(String fileName, boolean indexed) {
 		try {
 			if (fileName != null) {
 				SrcGenerator srcgen = new SrcGenerator(bundle.replace(fileName, "\\", "/"));
+				srcgen.setIndexed(indexed);
 				srcgen.perform(bundle.getBundle());
 			}
 		}
@@ -113,27 +113,38 @@ public class Split { // NO_UCD (unused code)
 		}
 	}
 
-	private void onSaveXml(String fileName, String... parts) {
+	private void onExtract(String dir) throws IOException {
+		SourceExtractor extractor = new SourceExtractor();
+		ExtractionCache cache = new ExtractionCache(ExtractionCache.getDefaultPath());
+		cache.load();
+		extractor.setCache(cache);
+		Map<String, String> ask = extractor.extract(dir);
+		System.out.println(extractor.getReport());
+
+		bundle.getBundle().addLanguage("en");
+		String rlng = bundle.getBundle().getLanguage(0).getLangId();
+		for (Map.Entry<String, String> stringStringEntry : ask.entrySet()) {
+			bundle.getBundle().putTranslation(stringStringEntry.getKey(), rlng, stringStringEntry.getValue());
+		}
+	}
+
+	private void onSaveXml(String fileName, boolean utf8, String... parts) {
 		if (fileName != null) {
 			try {
-				try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fileName))) {
-					BundleSet set = bundle.getBundle();
-					int items = set.getItemCount();
-					out.writeChar((char) 0xFEFF);
-					out.writeChars("<xml>\n");
-					for (int i = 0; i < items; ++i) {
-						BundleItem bi = set.getItem(i);
-						out.writeChars("\t<key name=\"" + bi.getId() + "\">\n");
-						for (String lang : bi.getLanguages()) {
-							if (!inArray(parts, lang)) {
-								continue;
-							}
-							out.writeChars("\t\t<value lang=\"" + lang + "\">" + bi.getTranslation(lang) + "</value>\n");
-						}
-						out.writeChars("\t</key>\n");
-					}
-					out.writeChars("</xml>\n");
-				}
+				XmlWriter xml = new XmlWriter(bundle.getBundle());
+				xml.setUtf8(utf8);
+				xml.write(fileName, parts);
+			}
+			catch (Exception e) {
+				infoException(fileName, e);
+			}
+		}
+	}
+
+	private void onSaveBinary(String fileName, String... parts) {
+		if (fileName != null) {
+			try {
+				new BinaryWriter(bundle.getBundle()).write(fileName, parts);
 			}
 			catch (Exception e) {
 				infoException(fileName, e);
@@ -168,67 +179,72 @@ public class Split { // NO_UCD (unused code)
 		}
 	}
 
-	private boolean inArray(String[] array, String lang) {
-		for (int j = 0; (array != null) && (j < array.length); ++j) {
-			if ((array[j] != null) && array[j].equalsIgnoreCase(lang)) {
-				return true;
+	private void onReplace(String fileName, String... options) throws Exception {
+		int kind = SearchPattern.EXACT;
+		boolean matchCase = true;
+		int j = 0;
+		for (; (j < options.length) && options[j].startsWith("-"); ++j) {
+			if (options[j].equals("--")) {
+				++j;
+				break;
 			}
-		}
-		return false;
-	}
-
-	/**
-	 * Reading unicode (UCS16) file stream into memory
-	 */
-	private String getBody(String file) throws IOException {
-		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
-			StringBuilder buf = new StringBuilder(in.available());
-			try {
-				in.readChar(); // skip UCS16 marker FEFF
-				for (;;) {
-					char ch = in.readChar();
-					buf.append(ch);
-				}
+			else if (options[j].equals("-regex")) {
+				kind = SearchPattern.REGEX;
+			}
+			else if (options[j].equals("-nocase")) {
+				matchCase = false;
 			}
-			catch (EOFException eof) {
+			else {
+				throw new IllegalArgumentException(options[j] + ": unknown option, expected "
+					+ "replace srcFile [-regex] [-nocase] [--] text replacement [lang ...]");
 			}
-			return buf.toString();
 		}
-	}
+		if (options.length < (j + 2)) {
+			throw new IllegalArgumentException("text and replacement expected, "
+				+ "replace srcFile [-regex] [-nocase] [--] text replacement [lang ...]");
+		}
+		SearchPattern pattern = new SearchPattern(options[j], kind, matchCase);
+		String replaceTo = options[j + 1];
+		BundleSet set = bundle.getBundle();
+		List<String> langs = set.getLangIds();
+		if (options.length > (j + 2)) {
+			langs.retainAll(Arrays.asList(options).subList(j + 2, options.length));
+		}
 
-	private void fillTable(Map<String, String> tbl) {
-		for (Map.Entry<String, String> stringStringEntry : tbl.entrySet()) {
-			StringTokenizer st = new StringTokenizer(stringStringEntry.getKey(), "!");
-			String key = st.nextToken();
-			if (!st.hasMoreTokens()) {
-				continue;
-			}
-			String lang = st.nextToken();
+		long time = System.currentTimeMillis();
+		List<BundleSet.Change> changes = set.replaceAll(pattern, replaceTo, true, langs);
+		time = System.currentTimeMillis() - time;
+		System.out.println(changes.size() + " value(s) replaced in " + time + " ms");
+		if (!changes.isEmpty()) {
+			onSaveAs(fileName);
+		}
+	}
 
-			if (bundle.getBundle().getLanguage(lang) == null) {
-				bundle.getBundle().addLanguage(lang);
+	private boolean inArray(String[] array, String lang) {
+		for (int j = 0; (array != null) && (j < array.length); ++j) {
+			if ((array[j] != null) && array[j].equalsIgnoreCase(lang)) {
+				return true;
 			}
-
-			bundle.getBundle().addKey(key);
-			bundle.getBundle().updateValue(key, lang, stringStringEntry.getValue());
 		}
+		return false;
 	}
 
 	private void onLoadXml(String fileName) throws Exception {
 		if (fileName != null) {
 			bundle.getBundle().addLanguage("en");
 
-			XmlReader xml = new XmlReader(getBody(fileName));
-			fillTable(xml.flatten());
+			try (Reader in = BundleManager.openText(fileName)) {
+				new XmlReader(in).read(bundle.getBundle()::putTranslation);
+			}
 		}
 	}
 
 	private void onLoadUtf(String fileName) throws Exception {
 		if (fileName != null) {
 			bundle.getBundle().addLanguage("en");
-			UtfParser parser = new UtfParser(new StringReader(getBody(fileName)));
-			Map<String, String> tbl = parser.parse();
-			fillTable(tbl);
+			try (Reader in = BundleManager.openText(fileName)) {
+				new UtfParser(in).parse(bundle.getBundle()::putTranslation);
+			}
 		}
 	}
 
@@ -274,6 +290,13 @@ public class Split { // NO_UCD (unused code)
 					}
 					obj.onSaveAs(fileName);
 					break;
+				case "extract":
+					obj.onExtract(options[0]);
+					obj.onSaveAs(fileName);
+					break;
+				case "replace":
+					obj.onReplace(fileName, options);
+					break;
 				case "split":
 					String dstFile = options[0];
 					options[0] = null;
@@ -281,10 +304,14 @@ public class Split { // NO_UCD (unused code)
 						obj.onSaveUtf(dstFile, options);
 					}
 					else if (dstFile.endsWith(".xml")) {
-						obj.onSaveXml(dstFile, options);
+						boolean utf8 = Arrays.asList(options).contains("-utf8");
+						obj.onSaveXml(dstFile, utf8, options);
+					}
+					else if (dstFile.endsWith(TranslatorConstants.BIN_EXTENSION)) {
+						obj.onSaveBinary(dstFile, options);
 					}
 					else if (dstFile.endsWith(".java")) {
-						obj.onGenCode(dstFile);
+						obj.onGenCode(dstFile, Arrays.asList(options).contains("-indexed"));
 					}
 					else {
 						throw new IOException(dstFile + ": wrong file format or I/O error");
@@ -294,19 +321,25 @@ public class Split { // NO_UCD (unused code)
 					throw new Exception();
 			}
 		}
-		catch (IOException eio) {
+		catch (IOException | IllegalArgumentException eio) {
 			System.err.println(eio.getMessage());
 		}
 		catch (Exception e) {
 			e.printStackTrace();
 			System.out.println("Usage:\n"
 				+ "\tjrc-split join srcFile ... addFile\n"
-				+ "\tjrc-split split srcFile dstFile [lang ...]\n"
+				+ "\tjrc-split split srcFile dstFile [-utf8] [-indexed] [lang ...]\n"
+				+ "\tjrc-split extract srcFile sourceDir\n"
+				+ "\tjrc-split replace srcFile [-regex] [-nocase] [--] text replacement [lang ...]\n"
 				+ "Where:\n"
 				+ "\taddFile\t- XML, Java, other bundle set or UCS16 text file\n"
 				+ "\tsrcFile\t- a root file of properties bundle set\n"
-				+ "\tdstFile\t- XML, Java, other bundle set or UCS16 text file\n"
-				+ "\tlang\t- locale abbreviation (suffix of slave properties files)\n");
+				+ "\tdstFile\t- XML, Java, binary bundle (.jrb) or UCS16 text file\n"
+				+ "\tlang\t- locale abbreviation (suffix of slave properties files)\n"
+				+ "\tsourceDir\t- directory searched for Java sources to extract literals from\n"
+				+ "\t-utf8\t- write XML files in UTF-8 instead of UTF-16\n"
+				+ "\t-indexed\t- generate Java code with one value array indexed by key instead of getters and setters\n"
+				+ "\ttext\t- text (or regular expression) to replace in every value; put -- before it if it starts with '-'\n");
 		}
 	}
 }
@@ -20,10 +20,25 @@ package org.zaval.tools.i18n.translator;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Set;
 
 class SrcGenerator {
+	/**
+	 * Limit for the encoded length of one string constant of the key table; the class file format
+	 * allows 65535 bytes.
+	 */
+	private static final int CHUNK_BYTES = 60000;
+
+	/**
+	 * Keys per nested holder class of id constants; each constant takes about two entries of the
+	 * holder's constant pool, which has room for 65535.
+	 */
+	private static final int HOLDER_KEYS = 10000;
+
 	private final PrintStream out;
 	private final String filename;
+	private boolean indexed;
 
 	SrcGenerator(String filename) throws IOException {
 		FileOutputStream fop = new FileOutputStream(filename);
@@ -31,7 +46,19 @@ class SrcGenerator {
 		this.filename = filename;
 	}
 
+	/**
+	 * Selects the indexed layout: values in one String[], reached by an int constant per key (or by
+	 * looking the key up), instead of a field with getter and setter per key.
+	 */
+	void setIndexed(boolean indexed) {
+		this.indexed = indexed;
+	}
+
 	void perform(BundleSet set) {
+		if (indexed) {
+			performIndexed(set);
+			return;
+		}
 		out.println("import java.util.*;\n\npublic class " + baseName(filename) + "\n{");
 		int j;
 		int k = set.getItemCount();
@@ -69,6 +96,142 @@ class SrcGenerator {
 		out.close();
 	}
 
+	/**
+	 * The generated class needs no code per key: the keys are packed into a few NUL-separated strings
+	 * that are split once by the static initializer, and getId() finds the index of a key. The id
+	 * constants are compile-time values spread over nested classes K0, K1, ... of HOLDER_KEYS keys
+	 * each, since one class would run out of constant pool at some 32K keys. Resources are loaded in
+	 * one pass over ResourceBundle.getKeys(), so no method grows with the number of keys.
+	 */
+	private void performIndexed(BundleSet set) {
+		int k = set.getItemCount();
+		out.println("import java.util.*;\n\npublic class " + baseName(filename) + "\n{");
+
+		Set<String> names = new HashSet<>();
+		for (int j = 0; j < k; ++j) {
+			if ((j % HOLDER_KEYS) == 0) {
+				out.println("\tpublic static final class K" + (j / HOLDER_KEYS) + "\n\t{");
+			}
+			out.println("\t\tpublic static final int " + makeConstName(set.getItem(j).getId(), names) + " = " + j + ";");
+			if ((((j + 1) % HOLDER_KEYS) == 0) || ((j + 1) == k)) {
+				out.println("\t}\n");
+			}
+		}
+
+		out.println("\tprivate static final String[] keyChunks = {");
+		StringBuilder chunk = new StringBuilder();
+		int bytes = 0;
+		for (int j = 0; j < k; ++j) {
+			String key = set.getItem(j).getId() + '\0';
+			int len = encodedLength(key);
+			if ((bytes > 0) && ((bytes + len) > CHUNK_BYTES)) {
+				out.println("\t\t\"" + chunk + "\",");
+				chunk.setLength(0);
+				bytes = 0;
+			}
+			escape(chunk, key);
+			bytes += len;
+		}
+		out.println("\t\t\"" + chunk + "\" };");
+		out.println("\tprivate static final String[] keys = new String[" + k + "];");
+		out.println("\tprivate static final Map<String, Integer> index = new HashMap<String, Integer>(" + (((k * 4) / 3) + 1) + ");");
+		out.println();
+		out.println("\tstatic\n\t{\n"
+			+ "\t\tint id = 0;\n"
+			+ "\t\tfor (int i = 0; i < keyChunks.length; ++i) {\n"
+			+ "\t\t\tString chunk = keyChunks[i];\n"
+			+ "\t\t\tfor (int from = 0; from < chunk.length(); ++id) {\n"
+			+ "\t\t\t\tint to = chunk.indexOf('\\0', from);\n"
+			+ "\t\t\t\tkeys[id] = chunk.substring(from, to);\n"
+			+ "\t\t\t\tindex.put(keys[id], Integer.valueOf(id));\n"
+			+ "\t\t\t\tfrom = to + 1;\n"
+			+ "\t\t\t}\n"
+			+ "\t\t}\n"
+			+ "\t}\n");
+
+		out.println("\tprivate final String[] values = new String[" + k + "];\n");
+		out.println("\tpublic static int getKeyCount()\t{ return keys.length;}");
+		out.println("\tpublic static String getKey(int id)\t{ return keys[id];}");
+		out.println("\tpublic static int getId(String key)\t{ Integer id = index.get(key); return id == null ? -1 : id.intValue();}");
+		out.println("\tpublic final String get(String key)\t{ int id = getId(key); return id < 0 ? null : values[id];}");
+		out.println("\tpublic final String get(int id)\t{ return values[id];}");
+		out.println("\tpublic final void set(int id, String what)\t{ values[id] = what;}");
+		out.println();
+		out.println("\tpublic void loadFromResource(ResourceBundle rs)\n\t{\n"
+			+ "\t\tString[] loaded = new String[values.length];\n"
+			+ "\t\tfor (Enumeration<String> e = rs.getKeys(); e.hasMoreElements();) {\n"
+			+ "\t\t\tString key = e.nextElement();\n"
+			+ "\t\t\tInteger id = index.get(key);\n"
+			+ "\t\t\tif (id != null) {\n"
+			+ "\t\t\t\tloaded[id.intValue()] = rs.getString(key);\n"
+			+ "\t\t\t}\n"
+			+ "\t\t}\n"
+			+ "\t\tfor (int id = 0; id < loaded.length; ++id) {\n"
+			+ "\t\t\tif (loaded[id] != null) {\n"
+			+ "\t\t\t\tvalues[id] = loaded[id];\n"
+			+ "\t\t\t}\n"
+			+ "\t\t\telse {\n"
+			+ "\t\t\t\treportNoRc(keys[id]);\n"
+			+ "\t\t\t}\n"
+			+ "\t\t}\n"
+			+ "\t}\n");
+		out.println("\tprivate void reportNoRc(String what)\n\t{\n"
+			+ "\t\tSystem.err.println(what + \": unknown resource\");\n\t}\n");
+		out.println("}");
+		out.close();
+	}
+
+	/**
+	 * @return upper-case identifier for the key, not among the names already used
+	 */
+	private static String makeConstName(String key, Set<String> names) {
+		StringBuilder res = new StringBuilder(key.length());
+		for (int i = 0; i < key.length(); ++i) {
+			char c = Character.toUpperCase(key.charAt(i));
+			res.append(((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) ? c : '_');
+		}
+		if ((res.length() == 0) || Character.isDigit(res.charAt(0)) || "_".equals(res.toString())) {
+			res.insert(0, "K_");
+		}
+		String name = res.toString();
+		for (int n = 1; !names.add(name); ++n) {
+			name = res + "_" + n;
+		}
+		return name;
+	}
+
+	/**
+	 * @return length of the string in the modified UTF-8 of the class file
+	 */
+	private static int encodedLength(String s) {
+		int res = 0;
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			res += (c != 0) && (c < 0x80) ? 1 : c < 0x800 ? 2 : 3;
+		}
+		return res;
+	}
+
+	private static void escape(StringBuilder res, String s) {
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				res.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				// octal, fixed width so that a following digit is not taken in; a unicode escape of a
+				// line break would end the literal, as javac translates those before tokenizing
+				res.append(String.format("\\%03o", (int) c));
+			}
+			else if (c > 0x7e) {
+				res.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				res.append(c);
+			}
+		}
+	}
+
 	private String makeVarName(BundleItem bi) {
 		String ask = bi.getTranslation("__var");
 		if (ask != null) {
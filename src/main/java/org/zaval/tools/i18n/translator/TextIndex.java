@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index over the values of a {@link TranslationStore}: for every language column, the slots
+ * holding a value that contains a given (lower-cased) three-character sequence.
+ * <p>
+ * The index answers with candidates only; callers check them against the real values. A changed
+ * value must be removed (with its old text) before the new one is added, so that the postings stay
+ * exact.
+ */
+class TextIndex {
+	static final int GRAM = 3;
+
+	private final List<Map<Long, Postings>> columns = new ArrayList<>();
+
+	void add(int column, int slot, String value) {
+		while (columns.size() <= column) {
+			columns.add(new HashMap<>());
+		}
+		Map<Long, Postings> grams = columns.get(column);
+		for (int i = 0; (i + GRAM) <= value.length(); ++i) {
+			grams.computeIfAbsent(gram(value, i), g -> new Postings()).add(slot);
+		}
+	}
+
+	/**
+	 * Drops the slot from the postings of every trigram of the value it held in the column.
+	 */
+	void remove(int column, int slot, String value) {
+		if (column >= columns.size()) {
+			return;
+		}
+		Map<Long, Postings> grams = columns.get(column);
+		for (int i = 0; (i + GRAM) <= value.length(); ++i) {
+			Long g = gram(value, i);
+			Postings p = grams.get(g);
+			if ((p != null) && p.remove(slot) && (p.size == 0)) {
+				grams.remove(g);
+			}
+		}
+	}
+
+	void clear() {
+		columns.clear();
+	}
+
+	/**
+	 * @return slots with a value in any column that may contain the text ignoring case, or null when
+	 *         the text is too short to be looked up
+	 */
+	BitSet find(String text) {
+		if (text.length() < GRAM) {
+			return null;
+		}
+		BitSet res = new BitSet();
+		for (Map<Long, Postings> grams : columns) {
+			Postings[] lists = new Postings[(text.length() - GRAM) + 1];
+			boolean found = true;
+			for (int i = 0; found && (i < lists.length); ++i) {
+				lists[i] = grams.get(gram(text, i));
+				found = lists[i] != null;
+			}
+			if (found) {
+				intersect(lists, res);
+			}
+		}
+		return res;
+	}
+
+	private static void intersect(Postings[] lists, BitSet res) {
+		Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+		Postings first = lists[0];
+		int[] pos = new int[lists.length];
+		next:
+		for (int k = 0; k < first.size; ++k) {
+			int slot = first.slots[k];
+			for (int j = 1; j < lists.length; ++j) {
+				Postings p = lists[j];
+				int at = Arrays.binarySearch(p.slots, pos[j], p.size, slot);
+				if (at < 0) {
+					pos[j] = -at - 1;
+					if (pos[j] == p.size) {
+						return;
+					}
+					continue next;
+				}
+				pos[j] = at;
+			}
+			res.set(slot);
+		}
+	}
+
+	private static long gram(String s, int i) {
+		return ((long) Character.toLowerCase(s.charAt(i)) << 32) | ((long) Character.toLowerCase(s.charAt(i + 1)) << 16)
+			| Character.toLowerCase(s.charAt(i + 2));
+	}
+
+	private static class Postings {
+		int[] slots = new int[2];
+		int size;
+
+		/**
+		 * Keeps the slots sorted; loading appends in slot order, so inserts are rare.
+		 */
+		boolean add(int slot) {
+			if ((size > 0) && (slots[size - 1] >= slot)) {
+				int j = Arrays.binarySearch(slots, 0, size, slot);
+				if (j >= 0) {
+					return false;
+				}
+				insert(-j - 1, slot);
+				return true;
+			}
+			insert(size, slot);
+			return true;
+		}
+
+		boolean remove(int slot) {
+			int j = Arrays.binarySearch(slots, 0, size, slot);
+			if (j < 0) {
+				return false;
+			}
+			System.arraycopy(slots, j + 1, slots, j, size - j - 1);
+			--size;
+			return true;
+		}
+
+		private void insert(int at, int slot) {
+			if (size == slots.length) {
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			System.arraycopy(slots, at, slots, at + 1, size - at);
+			slots[at] = slot;
+			++size;
+		}
+	}
+}
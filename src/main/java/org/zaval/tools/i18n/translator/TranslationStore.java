@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Translations of a bundle set, kept as one column of values per language. Every key owns a slot,
+ * which is its row in all the columns; slots of removed keys are reused.
+ * <p>
+ * The store also keeps, for every slot, how many of the tracked languages have a non-blank value,
+ * along with the number of keys missing in all of them or only in some of them. Listeners hear
+ * about every key whose completeness changes.
+ * <p>
+ * Every change of a value marks its language dirty (see {@link #attach(LangItem)}).
+ * <p>
+ * Optionally, the values are indexed by {@link TextIndex} to speed up substring searches.
+ */
+class TranslationStore {
+	static final int ABSENT = 0;
+	static final int MISSING = 1;
+	static final int PARTIAL = 2;
+	static final int COMPLETE = 3;
+
+	interface Listener {
+		void completenessChanged(String key, int oldState, int newState);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Map<String, Integer> langIds = new HashMap<>();
+	private String[] langs = new String[0];
+	private String[][] columns = new String[0][];
+	private int capacity = INITIAL_CAPACITY;
+	private int slots;
+	private int[] freeSlots = new int[INITIAL_CAPACITY];
+	private int freeCount;
+
+	private String[] keys = new String[INITIAL_CAPACITY];
+	private int[] filled = new int[INITIAL_CAPACITY]; // tracked languages with a value, -1 for free slots
+	private final Set<String> tracked = new HashSet<>();
+	private boolean[] trackedColumns = new boolean[0];
+	private final Map<String, LangItem> owners = new HashMap<>();
+	private LangItem[] columnOwners = new LangItem[0];
+	private int missingCount;
+	private int partialCount;
+	private Listener listener;
+	private TextIndex index;
+
+	int allocate(String key) {
+		int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		}
+		else {
+			if (slots == capacity) {
+				capacity *= 2;
+				for (int j = 0; j < columns.length; ++j) {
+					columns[j] = Arrays.copyOf(columns[j], capacity);
+				}
+				keys = Arrays.copyOf(keys, capacity);
+				filled = Arrays.copyOf(filled, capacity);
+			}
+			slot = slots++;
+		}
+		keys[slot] = key;
+		filled[slot] = 0;
+		count(getState(slot), 1);
+		fire(slot, ABSENT);
+		return slot;
+	}
+
+	void release(int slot) {
+		int old = getState(slot);
+		for (int j = 0; j < columns.length; ++j) {
+			if (columns[j][slot] != null) {
+				touch(j);
+				if (index != null) {
+					index.remove(j, slot, columns[j][slot]);
+				}
+			}
+			columns[j][slot] = null;
+		}
+		count(old, -1);
+		filled[slot] = -1;
+		fire(slot, old);
+		keys[slot] = null;
+		if (freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		}
+		freeSlots[freeCount++] = slot;
+	}
+
+	String get(int slot, String lang) {
+		Integer id = langIds.get(lang);
+		return id == null ? null : columns[id][slot];
+	}
+
+	void put(int slot, String lang, String value) {
+		Integer id = langIds.get(lang);
+		if (id == null) {
+			if (value == null) {
+				return;
+			}
+			id = addColumn(lang);
+		}
+		String old = columns[id][slot];
+		columns[id][slot] = value;
+		if (!Objects.equals(old, value)) {
+			touch(id);
+			if (index != null) {
+				reindex(id, slot, old, value);
+			}
+		}
+		if (trackedColumns[id]) {
+			int delta = (isFilled(value) ? 1 : 0) - (isFilled(old) ? 1 : 0);
+			if (delta != 0) {
+				int oldState = getState(slot);
+				count(oldState, -1);
+				filled[slot] += delta;
+				count(getState(slot), 1);
+				fire(slot, oldState);
+			}
+		}
+	}
+
+	Set<String> getLanguages(int slot) {
+		Set<String> res = new LinkedHashSet<>();
+		for (int j = 0; j < columns.length; ++j) {
+			if (columns[j][slot] != null) {
+				res.add(langs[j]);
+			}
+		}
+		return res;
+	}
+
+	int getState(int slot) {
+		int n = filled[slot];
+		if (n < 0) {
+			return ABSENT;
+		}
+		if (n == tracked.size()) {
+			return COMPLETE;
+		}
+		return n == 0 ? MISSING : PARTIAL;
+	}
+
+	int getMissingCount() {
+		return missingCount;
+	}
+
+	int getPartialCount() {
+		return partialCount;
+	}
+
+	int getTrackedCount() {
+		return tracked.size();
+	}
+
+	/**
+	 * Registers the language item whose dirty flag follows the changes of the language's values.
+	 */
+	void attach(LangItem item) {
+		owners.put(item.getLangId(), item);
+		Integer id = langIds.get(item.getLangId());
+		if (id != null) {
+			columnOwners[id] = item;
+		}
+	}
+
+	/**
+	 * Marks all languages dirty, for changes that go to every language file.
+	 */
+	void touchAll() {
+		for (LangItem item : owners.values()) {
+			item.setDirty(true);
+		}
+	}
+
+	void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Includes or excludes a language from the completeness check. The counts are rebuilt, but no
+	 * listener is notified: callers are expected to refresh whatever depends on them.
+	 */
+	void track(String lang, boolean on) {
+		if (on ? !tracked.add(lang) : !tracked.remove(lang)) {
+			return;
+		}
+		Integer id = langIds.get(lang);
+		if (id != null) {
+			trackedColumns[id] = on;
+		}
+		missingCount = 0;
+		partialCount = 0;
+		for (int slot = 0; slot < slots; ++slot) {
+			if (filled[slot] < 0) {
+				continue;
+			}
+			if ((id != null) && isFilled(columns[id][slot])) {
+				filled[slot] += on ? 1 : -1;
+			}
+			count(getState(slot), 1);
+		}
+	}
+
+	/**
+	 * Turns the value index on (building it from the current values) or off.
+	 */
+	void setIndexed(boolean on) {
+		if (!on) {
+			index = null;
+		}
+		else if (index == null) {
+			index = new TextIndex();
+			rebuildIndex();
+		}
+	}
+
+	boolean isIndexed() {
+		return index != null;
+	}
+
+	/**
+	 * @return slots whose values may contain the text ignoring case, or null when there is no index or
+	 *         it can't narrow the search
+	 */
+	BitSet findCandidates(String text) {
+		return index == null ? null : index.find(text);
+	}
+
+	String getKey(int slot) {
+		return keys[slot];
+	}
+
+	private void reindex(int id, int slot, String old, String value) {
+		if (old != null) {
+			index.remove(id, slot, old);
+		}
+		if (value != null) {
+			index.add(id, slot, value);
+		}
+	}
+
+	private void rebuildIndex() {
+		index.clear();
+		for (int j = 0; j < columns.length; ++j) {
+			for (int slot = 0; slot < slots; ++slot) {
+				if (columns[j][slot] != null) {
+					index.add(j, slot, columns[j][slot]);
+				}
+			}
+		}
+	}
+
+	private void touch(int id) {
+		if (columnOwners[id] != null) {
+			columnOwners[id].setDirty(true);
+		}
+	}
+
+	private void count(int state, int delta) {
+		if (state == MISSING) {
+			missingCount += delta;
+		}
+		else if (state == PARTIAL) {
+			partialCount += delta;
+		}
+	}
+
+	private void fire(int slot, int oldState) {
+		int newState = getState(slot);
+		if ((listener != null) && (oldState != newState)) {
+			listener.completenessChanged(keys[slot], oldState, newState);
+		}
+	}
+
+	private static boolean isFilled(String value) {
+		if (value == null) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); ++i) {
+			if (value.charAt(i) > ' ') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int addColumn(String lang) {
+		int id = langs.length;
+		lang = lang.intern();
+		langs = Arrays.copyOf(langs, id + 1);
+		langs[id] = lang;
+		columns = Arrays.copyOf(columns, id + 1);
+		columns[id] = new String[capacity];
+		trackedColumns = Arrays.copyOf(trackedColumns, id + 1);
+		trackedColumns[id] = tracked.contains(lang);
+		columnOwners = Arrays.copyOf(columnOwners, id + 1);
+		columnOwners[id] = owners.get(lang);
+		langIds.put(lang, id);
+		return id;
+	}
+}
@@ -51,40 +51,40 @@ import java.awt.event.AWTEventListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
-import java.io.StringReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.StringTokenizer;
+import java.util.Set;
 import java.util.stream.IntStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import org.apache.regexp.RE;
 import org.apache.regexp.RESyntaxException;
 import org.zaval.awt.AlignConstants;
 import org.zaval.awt.BorderedPanel;
+import org.zaval.awt.CachingResolver;
 import org.zaval.awt.ContextMenu;
 import org.zaval.awt.ContextMenuBar;
 import org.zaval.awt.EmulatedTextField;
 import org.zaval.awt.GraphTree;
 import org.zaval.awt.IELabel;
 import org.zaval.awt.LevelTree;
+import org.zaval.awt.NodeSource;
 import org.zaval.awt.ResizeLayout;
 import org.zaval.awt.Resizer;
 import org.zaval.awt.ResultField;
@@ -127,6 +127,7 @@ class Translator extends Frame implements AWTEventListener {
 	private boolean autoExpandTF = true; // auto-expand text areas
 	private boolean allowDot = true;
 	private boolean allowUScore = true;
+	private boolean indexValues; // keep a search index of values
 
 	private MenuItem newBundleMenu;
 	private MenuItem openBundleMenu;
@@ -134,8 +135,11 @@ class Translator extends Frame implements AWTEventListener {
 	private MenuItem saveBundleMenu;
 	private MenuItem saveAsBundleMenu;
 	private MenuItem genMenu;
+	private MenuItem genIndexedMenu;
 	private MenuItem parseMenu;
+	private MenuItem parseDirMenu;
 	private MenuItem saveXmlBundleMenu;
+	private MenuItem saveBinBundleMenu;
 	private MenuItem saveUtfBundleMenu;
 	private MenuItem loadXmlBundleMenu;
 	private MenuItem loadUtfBundleMenu;
@@ -174,6 +178,7 @@ class Translator extends Frame implements AWTEventListener {
 	private CheckboxMenuItem autoExpandTFMenu;
 	private CheckboxMenuItem allowDotMenu;
 	private CheckboxMenuItem allowUScoreMenu;
+	private CheckboxMenuItem indexValuesMenu;
 
 	// Context menus
 	private MenuItem ctNewMenu;
@@ -187,6 +192,7 @@ class Translator extends Frame implements AWTEventListener {
 	private IELabel sbl2;
 
 	private ToolkitResolver imgres;
+	private CachingResolver treeImages; // images of the key tree, resolved once for all nodes
 	private boolean exitInitiated = true;
 	private boolean isDirty;
 	private String wasSelectedKey;
@@ -207,16 +213,14 @@ class Translator extends Frame implements AWTEventListener {
 
 	private static final int MAX_PICK_LENGTH = 40;
 	private List<String> pickList = new ArrayList<>(8);
-	private int nullsCount;
-	private int notCompletedCount;
 
 	// search
 	private String searchCriteria;
 	private String lastKeyFound;
-	private boolean searchRegex;
+	private List<BundleItem> searchHits; // candidates found by the value index, null to scan all items
+	private int searchCursor; // next candidate to look at
+	private SearchPattern searchPattern;
 	private boolean searchData = true;
-	private boolean searchMask;
-	private boolean searchCase = true;
 	private boolean replacePrompt = true;
 	private boolean replaceAll;
 	private String replaceTo;
@@ -296,7 +300,14 @@ class Translator extends Frame implements AWTEventListener {
 		add("South", panel3);
 
 		tree = new GraphTree();
-		tree.setResolver(imgres);
+		String[] treeImageNames = { SYS_DIR + TranslatorConstants.OPEN_IMAGE, SYS_DIR + TranslatorConstants.CLOSE_IMAGE,
+			SYS_DIR + TranslatorConstants.WARN_IMAGE };
+		for (String name : treeImageNames) {
+			imgres.getImage(name, this);
+		}
+		treeImages = new CachingResolver(imgres);
+		treeImages.preload(treeImageNames);
+		tree.setResolver(treeImages);
 		tree.setBackground(Color.white);
 		ContextMenuBar mbar = new ContextMenuBar(this);
 
@@ -401,6 +412,7 @@ class Translator extends Frame implements AWTEventListener {
 		autoExpandTFMenu = new CheckboxMenuItem(RC("tools.translator.menu.options.autofit"), true);
 		allowDotMenu = new CheckboxMenuItem(RC("tools.translator.menu.options.allowdot"), true);
 		allowUScoreMenu = new CheckboxMenuItem(RC("tools.translator.menu.options.allowuscore"), true);
+		indexValuesMenu = new CheckboxMenuItem(RC("tools.translator.menu.options.indexvalues"), false);
 		omitSpacesMenu.disable();
 
 		Menu helpMenu = new Menu(RC("menu.help"));
@@ -409,9 +421,13 @@ class Translator extends Frame implements AWTEventListener {
 		Menu toolMenu = new Menu(RC("tools.translator.menu.tools"));
 		genMenu = new MenuItem(RC("tools.translator.menu.generate"));
 		genMenu.disable();
+		genIndexedMenu = new MenuItem(RC("tools.translator.menu.generateindexed"));
+		genIndexedMenu.disable();
 		parseMenu = new MenuItem(RC("tools.translator.menu.parse"));
+		parseDirMenu = new MenuItem(RC("tools.translator.menu.parsedir"));
 		saveXmlBundleMenu = new MenuItem(RC("tools.translator.menu.save.xml"));
 		saveUtfBundleMenu = new MenuItem(RC("tools.translator.menu.save.utf"));
+		saveBinBundleMenu = new MenuItem(RC("tools.translator.menu.save.bin"));
 		loadXmlBundleMenu = new MenuItem(RC("tools.translator.menu.load.xml"));
 		loadUtfBundleMenu = new MenuItem(RC("tools.translator.menu.load.utf"));
 
@@ -463,6 +479,7 @@ class Translator extends Frame implements AWTEventListener {
 		optionsMenu.add(autoExpandTFMenu);
 		optionsMenu.add(allowDotMenu);
 		optionsMenu.add(allowUScoreMenu);
+		optionsMenu.add(indexValuesMenu);
 
 		toolMenu.add(loadJarMenu);
 		toolMenu.addSeparator();
@@ -470,6 +487,7 @@ class Translator extends Frame implements AWTEventListener {
 		toolMenu.add(loadUtfBundleMenu);
 		toolMenu.add(saveXmlBundleMenu);
 		toolMenu.add(saveUtfBundleMenu);
+		toolMenu.add(saveBinBundleMenu);
 		toolMenu.addSeparator();
 		toolMenu.add(openBundleMenuP);
 		toolMenu.add(loadXmlBundleMenuP);
@@ -478,7 +496,9 @@ class Translator extends Frame implements AWTEventListener {
 		toolMenu.add(saveUtfBundleMenuP);
 		toolMenu.addSeparator();
 		toolMenu.add(genMenu);
+		toolMenu.add(genIndexedMenu);
 		toolMenu.add(parseMenu);
+		toolMenu.add(parseDirMenu);
 
 		helpMenu.add(aboutMenu);
 
@@ -731,11 +751,17 @@ class Translator extends Frame implements AWTEventListener {
 			onDeleteKey();
 		}
 		if (e.target == genMenu) {
-			onGenCode();
+			onGenCode(false);
+		}
+		if (e.target == genIndexedMenu) {
+			onGenCode(true);
 		}
 		if (e.target == parseMenu) {
 			onParseCode();
 		}
+		if (e.target == parseDirMenu) {
+			onParseDir();
+		}
 		if (e.target == aboutMenu) {
 			onAbout();
 		}
@@ -752,6 +778,9 @@ class Translator extends Frame implements AWTEventListener {
 		if (e.target == saveUtfBundleMenu) {
 			onSaveUtf(false);
 		}
+		if (e.target == saveBinBundleMenu) {
+			onSaveBinary();
+		}
 
 		if (e.target == openBundleMenuP) {
 			onOpen(true);
@@ -774,7 +803,7 @@ class Translator extends Frame implements AWTEventListener {
 		}
 
 		if ((e.target instanceof CheckboxMenuItem) && (e.target == showNullsMenu)) {
-			setIndicators(tree.getRootNode());
+			refreshIndicators();
 			tree.repaint();
 		}
 		if (e.target instanceof CheckboxMenuItem) {
@@ -784,7 +813,7 @@ class Translator extends Frame implements AWTEventListener {
 					ls.hidden = !ls.hidden;
 					ls.tf.setVisible(!ls.hidden);
 					ls.label.setVisible(!ls.hidden);
-					setIndicators(tree.getRootNode());
+					refreshIndicators();
 					textPanel.invalidate();
 					validate();
 				}
@@ -818,7 +847,6 @@ class Translator extends Frame implements AWTEventListener {
 
 				tree.remove(key); // kill children
 				removeLeafs(key); // clean leafs out of model
-				adjustIndicator(tn);
 				tree.repaint();
 				wasSelectedKey = null;
 				setTranslations();
@@ -841,8 +869,6 @@ class Translator extends Frame implements AWTEventListener {
 					removeLeafs(key);
 				}
 				tree.selectNode(tn.parent);
-
-				adjustIndicator(tn);
 				tree.repaint();
 
 				wasSelectedKey = null;
@@ -876,6 +902,10 @@ class Translator extends Frame implements AWTEventListener {
 		if (e.target == allowUScoreMenu) {
 			allowUScore = allowUScoreMenu.getState();
 		}
+		if (e.target == indexValuesMenu) {
+			indexValues = indexValuesMenu.getState();
+			bundle.getBundle().setIndexed(indexValues);
+		}
 
 		if (e.target instanceof MenuItem) {
 			String lbl = ((MenuItem) e.target).getLabel();
@@ -928,8 +958,6 @@ class Translator extends Frame implements AWTEventListener {
 			if (bi != null) {
 				bi.setComment(comm);
 			}
-			adjustIndicator(tree.getNode(wasSelectedKey));
-			setIndicators(tree.getNode(wasSelectedKey));
 			tree.repaint();
 		}
 		if (newKey == null) {
@@ -962,7 +990,6 @@ class Translator extends Frame implements AWTEventListener {
 		keynLab.setText("Key: " + newKey);
 		keynLab.repaint();
 		sbl2.setText(newKey);
-		adjustIndicator(tree.getNode(newKey));
 
 		wasSelectedKey = newKey;
 		String startValue = wasSelectedKey + ".";
@@ -1017,7 +1044,7 @@ class Translator extends Frame implements AWTEventListener {
 			saveBundleMenu.enable();
 			saveAsBundleMenu.enable();
 			genMenu.enable();
-			setIndicators(tree.getRootNode());
+			genIndexedMenu.enable();
 			isDirty = true;
 
 			textPanel.invalidate();
@@ -1104,17 +1131,20 @@ class Translator extends Frame implements AWTEventListener {
 		if (tree.getRootNode() != null) {
 			tree.remove(tree.getRootNode());
 		}
+		tree.setNodeSource(null);
 		tree.repaint();
 		textPanel.invalidate();
 		validate();
 		isDirty = false;
 		bundle = new BundleManager();
+		bundle.getBundle().setIndexed(indexValues);
 		langStates = new ArrayList<>();
 
 		closeMenu.disable();
 		saveBundleMenu.disable();
 		saveAsBundleMenu.disable();
 		genMenu.disable();
+		genIndexedMenu.disable();
 		langMenu.disable();
 	}
 
@@ -1140,85 +1170,79 @@ class Translator extends Frame implements AWTEventListener {
 	private void setIndicatorsInit() {
 		sbl2.setText(RC("tools.translator.progress.indicator"));
 		sbl2.repaint();
-		setIndicators(tree.getRootNode());
+		refreshIndicators();
 		hideTransMenu.enable();
 		sbl2.setText("");
 		sbl2.repaint();
 	}
 
-	private boolean setIndicators(TreeNode tn) {
-		if (tn == null) {
-			return false;
+	/**
+	 * Recounts the marked keys of the whole tree. Needed only when the marking rules change (hidden
+	 * languages, "show nulls") or after bulk loads; value edits are followed by completenessChanged().
+	 */
+	private void refreshIndicators() {
+		BundleSet set = bundle.getBundle();
+		set.setCompletenessListener(this::completenessChanged);
+		for (LangState ls : langStates) {
+			set.trackLanguage(ls.name, !ls.hidden);
 		}
-		boolean res = setIndicators(tn.sibling);
-		return setIndicator(tn, setIndicators(tn.child)) || res;
+		setIndicators(tree.getRootNode());
 	}
 
-	private boolean setIndicator(TreeNode tn, boolean childOn) {
-		if (tn == null) {
-			return false;
-		}
-		if (getVisLangCount() < 2) {
-			tn.setIndicator(null);
-			return false;
-		}
-		if (childOn) {
-			tn.setIndicator(SYS_DIR + TranslatorConstants.WARN_IMAGE);
-			return true;
+	private int setIndicators(TreeNode tn) {
+		int marked = 0;
+		for (; tn != null; tn = tn.sibling) {
+			TreeNode child = tn.child;
+			tn.markedDescendants = (child == null) && tn.pending ? countMarked(tn) : setIndicators(child);
+			boolean own = isMarked(getCompleteness(tn));
+			setIndicator(tn, own);
+			marked += tn.markedDescendants + (own ? 1 : 0);
 		}
+		return marked;
+	}
 
+	private void setIndicator(TreeNode tn, boolean marked) {
+		tn.setIndicator(marked || (tn.markedDescendants > 0) ? SYS_DIR + TranslatorConstants.WARN_IMAGE : null);
+	}
+
+	private int getCompleteness(TreeNode tn) {
 		BundleItem bi = bundle.getBundle().getItem(tn.getText());
-		if (bi == null) {
-			tn.setIndicator(null);
+		return bi == null ? TranslationStore.ABSENT : bi.getCompleteness();
+	}
+
+	private boolean isMarked(int state) {
+		if (bundle.getBundle().getTrackedLangCount() < 2) {
 			return false;
 		}
-		boolean isPres = false;
-		boolean isAbs = false;
-		for (int i = 0; i < langStates.size(); i++) {
-			LangState ls = getLangState(i);
-			if (ls.hidden) {
-				continue;
-			}
-			String ts = bi.getTranslation(ls.name);
-			if ((ts != null) && (ts.trim().isEmpty())) {
-				ts = null;
-			}
-			isAbs |= ts == null;
-			isPres |= ts != null;
-		}
-		tn.setIndicator(null);
-		if (isAbs && isPres) {
-			tree.setIndicator(tn.getText(), SYS_DIR + TranslatorConstants.WARN_IMAGE);
-			notCompletedCount++;
-		}
-		else {
-			if (isAbs) {
-				nullsCount++;
-				if (showNullsMenu.getState()) {
-					tn.setIndicator(SYS_DIR + TranslatorConstants.WARN_IMAGE);
-					return true;
-				}
-			}
-		}
-		return isAbs && isPres;
+		return (state == TranslationStore.PARTIAL) || ((state == TranslationStore.MISSING) && showNullsMenu.getState());
 	}
 
-	private void adjustIndicator(TreeNode tn) {
-		if (tn == null) {
+	private void completenessChanged(String key, int oldState, int newState) {
+		boolean marked = isMarked(newState);
+		if (isMarked(oldState) == marked) {
 			return;
 		}
-		setIndicator(tn, isSetInSiblings(tn.child));
-		adjustIndicator(tn.parent);
-	}
-
-	private boolean isSetInSiblings(TreeNode tn) {
-		if (tn == null) {
-			return false;
+		TreeNode tn = tree.findNode(key);
+		if (tn != null) {
+			setIndicator(tn, marked);
+			tn = tn.parent;
 		}
-		if (tn.getIndicator() != null) {
-			return true;
+		else {
+			// counted by the nearest node there is, if its children are pending
+			String name = key;
+			while ((tn == null) && (name != null)) {
+				int j = lastKeySeparator(name);
+				name = j < 0 ? null : name.substring(0, j);
+				tn = name == null ? tree.getRootNode() : tree.findNode(name);
+			}
+			if ((tn == null) || !tn.pending) {
+				return;
+			}
+		}
+		for (TreeNode p = tn; p != null; p = p.parent) {
+			p.markedDescendants += marked ? 1 : -1;
+			setIndicator(p, isMarked(getCompleteness(p)));
 		}
-		return isSetInSiblings(tn.sibling);
 	}
 
 	private void onSearch() {
@@ -1237,15 +1261,13 @@ class Translator extends Frame implements AWTEventListener {
 			return;
 		}
 
-		searchCriteria = text;
-		searchRegex = ed.isRegexMatching();
+		int kind = ed.isRegexMatching() ? SearchPattern.REGEX : ed.isMaskMatching() ? SearchPattern.MASK : SearchPattern.EXACT;
+		if (!compileSearch(text, kind, ed.isCaseSensitive())) {
+			ed.dispose();
+			return;
+		}
 		searchData = !ed.isKeyMatching();
-		searchMask = ed.isMaskMatching();
-		searchCase = ed.isCaseSensitive();
 		replaceTo = null;
-		if (!searchRegex && !searchMask && !searchCase) {
-			searchCriteria = searchCriteria.toLowerCase();
-		}
 
 		lastKeyFound = null;
 		onSearchAgain();
@@ -1268,70 +1290,38 @@ class Translator extends Frame implements AWTEventListener {
 			return;
 		}
 
-		searchCriteria = text;
-		searchRegex = ed.isRegexMatching();
+		int kind = ed.isRegexMatching() ? SearchPattern.REGEX : SearchPattern.EXACT;
+		if (!compileSearch(text, kind, ed.isCaseSensitive())) {
+			return;
+		}
 		searchData = true;
-		searchMask = false;
-		searchCase = ed.isCaseSensitive();
 		replacePrompt = ed.isPromptRequired();
 		replaceAll = ed.isReplaceAll();
 		replaceTo = ed.getReplaceTo();
 
-		if (!searchRegex && !searchMask && !searchCase) {
-			searchCriteria = searchCriteria.toLowerCase();
-		}
-
 		lastKeyFound = null;
 		onSearchAgain();
 	}
 
-	private boolean isMatchedWith(String what) {
-		if (what == null) {
-			return false;
-		}
-		if (searchRegex) {
-			return match_regex(searchCriteria, what, !searchCase);
-		}
-		else if (searchMask) {
-			return match_mask(searchCriteria, what, !searchCase);
+	private boolean compileSearch(String text, int kind, boolean matchCase) {
+		try {
+			searchPattern = new SearchPattern(text, kind, matchCase);
 		}
-		else {
-			if (searchCase) {
-				return what.contains(searchCriteria);
-			}
-			else {
-				return what.toLowerCase().contains(searchCriteria);
-			}
+		catch (RESyntaxException e) {
+			infoException(e);
+			return false;
 		}
+		searchCriteria = text;
+		return true;
+	}
+
+	private boolean isMatchedWith(String what) {
+		return searchPattern.matches(what);
 	}
 
 	private void makeReplaceImpl() {
 		String lang = curLangForReplace.getLangId();
-		String val = curItemForReplace.getTranslation(lang);
-		if (searchRegex) {
-			try {
-				RE re = new RE(searchCriteria, searchCase ? RE.MATCH_NORMAL : RE.MATCH_CASEINDEPENDENT);
-				val = re.subst(val, replaceTo, replaceAll ? RE.REPLACE_ALL : RE.REPLACE_FIRSTONLY);
-			}
-			catch (RESyntaxException e) {
-				infoException(e);
-				replaceTo = null;
-			}
-		}
-		else {
-			if (replaceAll) {
-				val = bundle.replace(val, searchCriteria, replaceTo);
-			}
-			else {
-				int j1 = val.indexOf(searchCriteria);
-				if (j1 > 0) {
-					val = val.substring(0, j1) + replaceTo + val.substring(j1 + searchCriteria.length());
-				}
-				else if (j1 == 0) {
-					val = replaceTo + val.substring(searchCriteria.length());
-				}
-			}
-		}
+		String val = searchPattern.replace(curItemForReplace.getTranslation(lang), replaceTo, replaceAll);
 		curItemForReplace.setTranslation(lang, val);
 
 		if (tree.getSelectedText().equals(curItemForReplace.getId())) {
@@ -1408,37 +1398,54 @@ class Translator extends Frame implements AWTEventListener {
 		}
 
 		int replacements = 0;
-		for (i = j; i < bundle.getBundle().getItemCount(); ++i) {
-			BundleItem bi = bundle.getBundle().getItem(i);
-			for (int k = 0; k < bundle.getBundle().getLangCount(); ++k) {
-				LangItem li = bundle.getBundle().getLanguage(k);
-				String val = bi.getTranslation(li.getLangId());
-				if (isMatchedWith(val)) {
-					lastKeyFound = bi.getId();
-
-					if ((replaceTo == null) || ((replaceTo != null) && !replaceAll)) {
-						tree.selectNode(bi.getId());
-						tree.openToNode(bi.getId());
-						setTranslations(bi.getId());
-						tree.repaint();
+		if ((replaceTo != null) && replaceAll && !replacePrompt) {
+			replacements = replaceEverywhere();
+		}
+		else {
+			BundleSet set = bundle.getBundle();
+			if (first) {
+				searchHits = set.findCandidates(searchPattern);
+				searchCursor = 0;
+			}
+			int count = searchHits == null ? set.getItemCount() : searchHits.size();
+			for (i = searchHits == null ? j : searchCursor; i < count; ++i) {
+				BundleItem bi = searchHits == null ? set.getItem(i) : searchHits.get(i);
+				if (searchHits != null) {
+					if (set.getItem(bi.getId()) != bi) {
+						continue; // removed since the search started
+					}
+					searchCursor = i + 1;
+				}
+				for (int k = 0; k < bundle.getBundle().getLangCount(); ++k) {
+					LangItem li = bundle.getBundle().getLanguage(k);
+					String val = bi.getTranslation(li.getLangId());
+					if (isMatchedWith(val)) {
+						lastKeyFound = bi.getId();
+
+						if ((replaceTo == null) || ((replaceTo != null) && !replaceAll)) {
+							tree.selectNode(bi.getId());
+							tree.openToNode(bi.getId());
+							setTranslations(bi.getId());
+							tree.repaint();
+
+							if (replaceTo != null) {
+								makeReplace(bi, li);
+							}
 
-						if (replaceTo != null) {
-							makeReplace(bi, li);
+							textPanel.invalidate();
+							validate();
+							if (replaceTo == null) {
+								textPanel.requestFocus();
+								LangState ls = getLangState(k);
+								ls.tf.getControl().requestFocus();
+							}
+							return;
 						}
-
-						textPanel.invalidate();
-						validate();
+						makeReplace(bi, li);
+						++replacements;
 						if (replaceTo == null) {
-							textPanel.requestFocus();
-							LangState ls = getLangState(k);
-							ls.tf.getControl().requestFocus();
+							break;
 						}
-						return;
-					}
-					makeReplace(bi, li);
-					++replacements;
-					if (replaceTo == null) {
-						break;
 					}
 				}
 			}
@@ -1456,6 +1463,35 @@ class Translator extends Frame implements AWTEventListener {
 		errDialog.show();
 	}
 
+	/**
+	 * Replaces all matches at once, with no prompts and no tree updates on the way.
+	 */
+	private int replaceEverywhere() {
+		setTranslations(); // flush the fields being edited
+		BundleSet set = bundle.getBundle();
+		List<BundleSet.Change> changes;
+		try {
+			changes = set.replaceAll(searchPattern, replaceTo, true, set.getLangIds());
+		}
+		catch (IllegalStateException e) {
+			infoException(e);
+			return 0;
+		}
+		String key = tree.getSelectedText();
+		for (BundleSet.Change ch : changes) {
+			if (ch.key.equals(key)) {
+				LangState ls = getLangState(set.getLangIndex(ch.lang));
+				if (ls != null) {
+					ls.tf.setText(ch.newValue);
+				}
+			}
+		}
+		if (!changes.isEmpty()) {
+			isDirty = true;
+		}
+		return changes.size();
+	}
+
 	private void onNewResource() {
 		EditDialog ed = new EditDialog(this, RC("tools.translator.label.newrestitle"), true, this);
 		ed.setLabelCaption(RC("tools.translator.label.filesuff"));
@@ -1543,7 +1579,7 @@ class Translator extends Frame implements AWTEventListener {
 			sbl2.setText(RC("tools.translator.progress.loadfiles"));
 			sbl2.repaint();
 			try {
-				BundleManager bundle2 = new BundleManager(fileName);
+				BundleManager bundle2 = new BundleManager(fileName, true);
 				join(bundle2, part);
 			}
 			catch (Exception e) {
@@ -1623,15 +1659,146 @@ class Translator extends Frame implements AWTEventListener {
 			3, 5, 3);
 	}
 
+	/**
+	 * Adds the nodes for all keys of the bundle to the tree in one pass over the sorted keys. The
+	 * ancestors of the last key added are kept on a stack: the next key mostly shares some of them,
+	 * and only ancestors not on the stack are looked up or created.
+	 */
+	private void buildTree() {
+		BundleSet set = bundle.getBundle();
+		List<TreeNode> nodes = new ArrayList<>(set.getItemCount());
+		Map<String, TreeNode> created = new HashMap<>();
+		List<TreeNode> stack = new ArrayList<>();
+		for (int i = 0; i < set.getItemCount(); ++i) {
+			String key = set.getItem(i).getId();
+			if ((created.get(key) != null) || (tree.getNode(key) != null)) {
+				continue;
+			}
+			while (!stack.isEmpty() && !isAncestorKey(stack.get(stack.size() - 1).text, key)) {
+				stack.remove(stack.size() - 1);
+			}
+			// ancestors below the deepest one on the stack, then the key itself
+			int from = stack.isEmpty() ? 0 : stack.get(stack.size() - 1).text.length() + 1;
+			for (int j = from; j <= key.length(); ++j) {
+				if ((j < key.length()) && !isKeySeparator(key.charAt(j))) {
+					continue;
+				}
+				String name = key.substring(0, j);
+				TreeNode tn = created.get(name);
+				if (tn == null) {
+					tn = tree.getNode(name);
+				}
+				if (tn == null) {
+					tn = newKeyNode(name);
+					tn.parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+					created.put(name, tn);
+					nodes.add(tn);
+				}
+				stack.add(tn);
+			}
+		}
+		tree.insertAll(nodes);
+	}
+
+	private TreeNode newKeyNode(String name) {
+		TreeNode tn = new TreeNode(name, SYS_DIR + TranslatorConstants.OPEN_IMAGE, SYS_DIR + TranslatorConstants.CLOSE_IMAGE);
+		tn.caption = name.substring(lastKeySeparator(name) + 1);
+		tn.setContextMenu(1);
+		return tn;
+	}
+
+	/**
+	 * Gives the tree of a large bundle the nodes under a node when they are first shown, from the
+	 * range of sorted keys starting with the node's key.
+	 */
+	private final NodeSource keySource = new NodeSource() {
+		@Override
+		public List<TreeNode> getChildren(TreeNode parent) {
+			return loadChildren(parent);
+		}
+
+		@Override
+		public String getParentName(String name) {
+			int j = lastKeySeparator(name);
+			return j < 0 ? null : name.substring(0, j);
+		}
+	};
+
+	private List<TreeNode> loadChildren(TreeNode parent) {
+		boolean top = parent == tree.getRootNode();
+		String prefix = top ? "" : parent.getText();
+		List<TreeNode> res = new ArrayList<>();
+		Map<String, TreeNode> byName = new HashMap<>();
+		for (BundleItem bi : bundle.getBundle().getKeysBeginningWith(prefix)) {
+			String key = bi.getId();
+			if (!top && !isAncestorKey(prefix, key)) {
+				continue;
+			}
+			int j = top ? 0 : prefix.length() + 1;
+			while ((j < key.length()) && !isKeySeparator(key.charAt(j))) {
+				++j;
+			}
+			String name = key.substring(0, j);
+			TreeNode tn = byName.get(name);
+			if (tn == null) {
+				tn = newKeyNode(name);
+				tn.setResolver(treeImages);
+				byName.put(name, tn);
+				res.add(tn);
+			}
+			if (j < key.length()) {
+				tn.pending = true;
+				if (isMarked(bi.getCompleteness())) {
+					++tn.markedDescendants;
+				}
+			}
+		}
+		boolean hide = hideTransMenu.getState();
+		for (TreeNode tn : res) {
+			setIndicator(tn, isMarked(getCompleteness(tn)));
+			if (hide && (tn.getIndicator() == null)) {
+				tn.setHide(true);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return number of marked keys under a node whose children were not created yet
+	 */
+	private int countMarked(TreeNode tn) {
+		boolean top = tn == tree.getRootNode();
+		int res = 0;
+		for (BundleItem bi : bundle.getBundle().getKeysBeginningWith(top ? "" : tn.getText())) {
+			if ((top || isAncestorKey(tn.getText(), bi.getId())) && isMarked(bi.getCompleteness())) {
+				++res;
+			}
+		}
+		return res;
+	}
+
+	private boolean isKeySeparator(char ch) {
+		return (allowDot && (ch == TranslatorConstants.KEY_SEPARATOR)) || (allowUScore && (ch == TranslatorConstants.KEY_SEPARATOR_2));
+	}
+
+	/**
+	 * @return true if the key is a node under the other one in the tree
+	 */
+	private boolean isAncestorKey(String ancestor, String key) {
+		return (key.length() > ancestor.length()) && key.startsWith(ancestor) && isKeySeparator(key.charAt(ancestor.length()));
+	}
+
+	private int lastKeySeparator(String key) {
+		int ind = allowDot ? key.lastIndexOf(TranslatorConstants.KEY_SEPARATOR) : -1;
+		int ind2 = allowUScore ? key.lastIndexOf(TranslatorConstants.KEY_SEPARATOR_2) : -1;
+		return Math.max(ind, ind2);
+	}
+
 	private void addToTree(String s) {
 		if (tree.getNode(s) != null) {
 			return;
 		}
-		int ind = allowDot ? s.lastIndexOf(TranslatorConstants.KEY_SEPARATOR) : -1;
-		int ind2 = allowUScore ? s.lastIndexOf(TranslatorConstants.KEY_SEPARATOR_2) : -1;
-		if (ind2 > ind) {
-			ind = ind2;
-		}
+		int ind = lastKeySeparator(s);
 
 		TreeNode tnew = new TreeNode(s, SYS_DIR + TranslatorConstants.OPEN_IMAGE, SYS_DIR + TranslatorConstants.CLOSE_IMAGE);
 		if (ind < 0) {
@@ -1733,13 +1900,10 @@ class Translator extends Frame implements AWTEventListener {
 
 	private void onStatistics() {
 		MessageBox2 sDialog = new MessageBox2(this);
-		nullsCount = 0;
-		notCompletedCount = 0;
-		setIndicators(tree.getRootNode());
 		String text = RC("tools.translator.label.statistics.lang") + bundle.getBundle().getLangCount() + "\n";
 		text = text + RC("tools.translator.label.statistics.record") + bundle.getBundle().getItemCount() + "\n";
-		text = text + RC("tools.translator.label.statistics.nulls") + nullsCount + "\n";
-		text = text + RC("tools.translator.label.statistics.notcompleted") + notCompletedCount;
+		text = text + RC("tools.translator.label.statistics.nulls") + bundle.getBundle().getMissingCount() + "\n";
+		text = text + RC("tools.translator.label.statistics.notcompleted") + bundle.getBundle().getPartialCount();
 		sDialog.setText(text);
 		sDialog.setTitle(RC("dialog.title.info"));
 		String[] OK_BUT = { RC("dialog.button.ok") };
@@ -1751,7 +1915,7 @@ class Translator extends Frame implements AWTEventListener {
 		sDialog.show();
 	}
 
-	private void onGenCode() {
+	private void onGenCode(boolean indexed) {
 		try {
 			String fn = (bundle.getBundle().getLangCount() == 0) || (bundle.getBundle().getLanguage(0).getLangFile() == null)
 				? "Sample"
@@ -1761,6 +1925,7 @@ class Translator extends Frame implements AWTEventListener {
 			String filename = lookupFileForStore(fn + "ResourceMapped.java");
 			if (filename != null) {
 				SrcGenerator srcgen = new SrcGenerator(bundle.replace(filename, "\\", "/"));
+				srcgen.setIndexed(indexed);
 				srcgen.perform(bundle.getBundle());
 			}
 		}
@@ -1777,21 +1942,7 @@ class Translator extends Frame implements AWTEventListener {
 				filename = bundle.replace(filename, "\\", "/");
 				JavaParser parser = new JavaParser(new FileInputStream(filename));
 				Map<String, String> ask = parser.parse();
-				if (ask.isEmpty()) {
-					ask.put("empty", "");
-				}
-
-				clear();
-				initControls();
-				bundle.getBundle().addLanguage("en");
-				String rlng = bundle.getBundle().getLanguage(0).getLangId();
-
-				for (Map.Entry<String, String> stringStringEntry : ask.entrySet()) {
-					BundleItem bi = bundle.getBundle().addKey(stringStringEntry.getKey());
-					bi.setTranslation(rlng, stringStringEntry.getValue());
-				}
-				bundle.getBundle().resort();
-				initData(false);
+				setExtracted(ask);
 				setTitle(filename);
 			}
 		}
@@ -1800,7 +1951,49 @@ class Translator extends Frame implements AWTEventListener {
 		}
 	}
 
+	/**
+	 * Extracts the literals of all sources in the directory of the file chosen.
+	 */
+	private void onParseDir() {
+		try {
+			String filename = lookupFileForLoad("*.java");
+			if (filename != null) {
+				String dir = new File(filename).getParent();
+				SourceExtractor extractor = new SourceExtractor();
+				ExtractionCache cache = new ExtractionCache(ExtractionCache.getDefaultPath());
+				cache.load();
+				extractor.setCache(cache);
+				Map<String, String> ask = extractor.extract(dir);
+				setExtracted(ask);
+				setTitle(dir);
+				sbl2.setText(extractor.getReport());
+			}
+		}
+		catch (Exception e) {
+			infoException(e);
+		}
+	}
+
+	private void setExtracted(Map<String, String> ask) {
+		if (ask.isEmpty()) {
+			ask.put("empty", "");
+		}
+
+		clear();
+		initControls();
+		bundle.getBundle().addLanguage("en");
+		String rlng = bundle.getBundle().getLanguage(0).getLangId();
+
+		for (Map.Entry<String, String> stringStringEntry : ask.entrySet()) {
+			BundleItem bi = bundle.getBundle().addKey(stringStringEntry.getKey());
+			bi.setTranslation(rlng, stringStringEntry.getValue());
+		}
+		bundle.getBundle().resort();
+		initData(false);
+	}
+
 	private void initData(boolean part) {
+		bundle.getBundle().setIndexed(indexValues);
 		/* Initialize language set */
 		for (int i = 0; i < bundle.getBundle().getLangCount(); ++i) {
 			LangItem lang2 = bundle.getBundle().getLanguage(i);
@@ -1809,16 +2002,13 @@ class Translator extends Frame implements AWTEventListener {
 		hideTransMenu.setState(false);
 
 		/* Add all keys in tree view ... */
-		BundleItem bi = bundle.getBundle().getItem(0);
-		addToTree(bi.getId());
-
-		for (int i = 1; i < bundle.getBundle().getItemCount(); ++i) {
-			BundleItem bi2 = bundle.getBundle().getItem(i);
-			addToTree(bi2.getId());
-			if ((i % 250) == 0) {
-				sbl2.setText("    " + i + " " + RC("tools.translator.progress.addkeys"));
-				sbl2.repaint();
-			}
+		sbl2.setText("    " + bundle.getBundle().getItemCount() + " " + RC("tools.translator.progress.addkeys"));
+		sbl2.repaint();
+		if ((tree.getRootNode() == null) && (bundle.getBundle().getItemCount() >= TranslatorConstants.LAZY_TREE_KEYS)) {
+			tree.setNodeSource(keySource);
+		}
+		else {
+			buildTree();
 		}
 		setAllIndicators();
 		sbl2.setText("");
@@ -1841,6 +2031,7 @@ class Translator extends Frame implements AWTEventListener {
 		saveBundleMenu.enable();
 		saveAsBundleMenu.enable();
 		genMenu.enable();
+		genIndexedMenu.enable();
 
 		textPanel.invalidate();
 		validate();
@@ -1959,12 +2150,14 @@ class Translator extends Frame implements AWTEventListener {
 			autoExpandTF = (tbl.get("autoExpandTF") == null) || "Y".equals(tbl.get("autoExpandTF"));
 			allowDot = (tbl.get("allowDot") == null) || "Y".equals(tbl.get("allowDot"));
 			allowUScore = (tbl.get("allowUScore") == null) || "Y".equals(tbl.get("allowUScore"));
+			indexValues = "Y".equals(tbl.get("indexValues"));
 
 			keepLastDirMenu.setState(keepLastDir);
 			omitSpacesMenu.setState(omitSpaces);
 			autoExpandTFMenu.setState(autoExpandTF);
 			allowDotMenu.setState(allowDot);
 			allowUScoreMenu.setState(allowUScore);
+			indexValuesMenu.setState(indexValues);
 		}
 		catch (Exception e1) {
 		}
@@ -2011,6 +2204,7 @@ class Translator extends Frame implements AWTEventListener {
 			ini.putString("autoExpandTF", autoExpandTF ? "Y" : "N");
 			ini.putString("allowDot", allowDot ? "Y" : "N");
 			ini.putString("allowUScore", keepLastDir ? "Y" : "N");
+			ini.putString("indexValues", indexValues ? "Y" : "N");
 			ini.close();
 		}
 		catch (Exception e) {
@@ -2063,24 +2257,24 @@ class Translator extends Frame implements AWTEventListener {
 		String filename = lookupFileForStore(bundle.baseName(fn) + ".xml");
 		if (filename != null) {
 			try {
-				try (DataOutputStream out = new DataOutputStream(new FileOutputStream(filename))) {
-					BundleSet set = bundle.getBundle();
-					int items = set.getItemCount();
-					out.writeChar((char) 0xFEFF);
-					out.writeChars("<xml>\n");
-					for (int i = 0; i < items; ++i) {
-						BundleItem bi = set.getItem(i);
-						out.writeChars("\t<key name=\"" + bi.getId() + "\">\n");
-						for (String lang : bi.getLanguages()) {
-							if (part && !inArray(parts, lang)) {
-								continue;
-							}
-							out.writeChars("\t\t<value lang=\"" + lang + "\">" + bi.getTranslation(lang) + "</value>\n");
-						}
-						out.writeChars("\t</key>\n");
-					}
-					out.writeChars("</xml>\n");
-				}
+				new XmlWriter(bundle.getBundle()).write(filename, part ? parts : null);
+			}
+			catch (Exception e) {
+				infoException(e);
+			}
+		}
+	}
+
+	private void onSaveBinary() {
+		String fn = bundle.getBundle().getLanguage(0).getLangFile();
+		if (fn == null) {
+			fn = "autosaved";
+		}
+
+		String filename = lookupFileForStore(bundle.baseName(fn) + TranslatorConstants.BIN_EXTENSION);
+		if (filename != null) {
+			try {
+				new BinaryWriter(bundle.getBundle()).write(filename, (String[]) null);
 			}
 			catch (Exception e) {
 				infoException(e);
@@ -2130,45 +2324,6 @@ class Translator extends Frame implements AWTEventListener {
 		return Arrays.stream(array).anyMatch(element -> element.equalsIgnoreCase(lang));
 	}
 
-	/**
-	 * Reading unicode (UCS16) file stream into memory
-	 */
-	private String getBody(String file) throws IOException {
-		StringBuilder buf = new StringBuilder();
-		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
-			buf.ensureCapacity(in.available());
-
-			try {
-				in.readChar(); // skip UCS16 marker FEFF
-				for (;;) {
-					buf.append(in.readChar());
-				}
-			}
-			catch (EOFException eof) {
-			}
-		}
-		return buf.toString();
-	}
-
-	private void fillTable(Map<String, String> tbl) {
-		for (Map.Entry<String, String> stringStringEntry : tbl.entrySet()) {
-			StringTokenizer st = new StringTokenizer(stringStringEntry.getKey(), "!");
-			String key = st.nextToken();
-			if (!st.hasMoreTokens()) {
-				continue;
-			}
-			String lang = st.nextToken();
-
-			if (bundle.getBundle().getLanguage(lang) == null) {
-				bundle.getBundle().addLanguage(lang);
-			}
-
-			bundle.getBundle().addKey(key);
-			bundle.getBundle().updateValue(key, lang, stringStringEntry.getValue());
-		}
-		bundle.getBundle().resort();
-	}
-
 	private void onLoadXml(boolean part) {
 		String mask = "*.xml";
 		String filename = lookupFileForLoad(mask);
@@ -2182,8 +2337,10 @@ class Translator extends Frame implements AWTEventListener {
 			bundle.getBundle().addLanguage("en");
 
 			try {
-				XmlReader xml = new XmlReader(getBody(filename));
-				fillTable(xml.flatten());
+				try (Reader in = BundleManager.openText(filename)) {
+					new XmlReader(in).read(bundle.getBundle()::putTranslation);
+				}
+				bundle.getBundle().resort();
 			}
 			catch (Exception e) {
 				infoException(e);
@@ -2205,9 +2362,10 @@ class Translator extends Frame implements AWTEventListener {
 			}
 			bundle.getBundle().addLanguage("en");
 			try {
-				UtfParser parser = new UtfParser(new StringReader(getBody(filename)));
-				Map<String, String> tbl = parser.parse();
-				fillTable(tbl);
+				try (Reader in = BundleManager.openText(filename)) {
+					new UtfParser(in).parse(bundle.getBundle()::putTranslation);
+				}
+				bundle.getBundle().resort();
 			}
 			catch (Exception e) {
 				infoException(e);
@@ -2296,9 +2454,7 @@ class Translator extends Frame implements AWTEventListener {
 			tree.remove(key);
 		}
 
-		int j1 = allowDot ? key.lastIndexOf(TranslatorConstants.KEY_SEPARATOR) : -1;
-		int j2 = allowUScore ? key.lastIndexOf(TranslatorConstants.KEY_SEPARATOR_2) : -1;
-		j1 = Math.max(j1, j2);
+		int j1 = lastKeySeparator(key);
 		if (j1 <= 0) {
 			return;
 		}
@@ -2325,42 +2481,47 @@ class Translator extends Frame implements AWTEventListener {
 			return;
 		}
 
-		BundleItem biOldAlone = bundle.getBundle().getItem(oldKeyName);
-		List<BundleItem> en = bundle.getBundle().getKeysBeginningWith(oldKeyName);
-		Map<String, String> oldValues = new HashMap<>();
+		BundleSet set = bundle.getBundle();
+		BundleItem biOldAlone = set.getItem(oldKeyName);
+		List<BundleItem> en = set.getKeysBeginningWith(oldKeyName);
+		List<String> newKeys = new ArrayList<>(en.size());
+		Set<String> taken = new HashSet<>();
 		for (BundleItem biOld : en) {
-			oldValues.clear();
 			String newKey = newKeyName;
 			if (biOldAlone == null) {
 				newKey = newKeyName + biOld.getId().substring(oldKeyName.length());
 			}
-
-			int k = bundle.getBundle().getLangCount();
-			if (bundle.getBundle().getItem(newKey) != null) {
+			BundleItem clash = set.getItem(newKey);
+			if (((clash != null) && !clash.getId().startsWith(oldKeyName)) || !taken.add(newKey)) {
 				errDialog.setText(RC("tools.translator.label.rename.dup"));
 				errDialog.show();
 				return;
 			}
+			newKeys.add(newKey);
+		}
 
-			// Keep old values
+		// Keep old values
+		int k = set.getLangCount();
+		List<String[]> oldValues = new ArrayList<>(en.size());
+		for (BundleItem biOld : en) {
+			String[] values = new String[k];
 			for (int j = 0; j < k; ++j) {
-				String lang = bundle.getBundle().getLanguage(j).getLangId();
-				String value = biOld.getTranslation(lang);
-				if (value != null) {
-					oldValues.put(lang, value);
-				}
+				values[j] = biOld.getTranslation(set.getLanguage(j).getLangId());
 			}
-			bundle.getBundle().removeKey(biOld.getId());
+			oldValues.add(values);
+		}
+		set.removeKeysBeginningWith(oldKeyName);
 
-			// Add new key
+		// Add new keys
+		for (int i = 0; i < newKeys.size(); ++i) {
+			String newKey = newKeys.get(i);
 			keyName.setText(newKey);
 			addToTree(newKey);
-			BundleItem biNew = bundle.getBundle().addKey(newKey);
+			BundleItem biNew = set.addKey(newKey);
+			String[] values = oldValues.get(i);
 			for (int j = 0; j < k; ++j) {
-				String lang = bundle.getBundle().getLanguage(j).getLangId();
-				String value = oldValues.get(lang);
-				if (value != null) {
-					biNew.setTranslation(lang, value);
+				if (values[j] != null) {
+					biNew.setTranslation(set.getLanguage(j).getLangId(), values[j]);
 				}
 			}
 		}
@@ -2374,7 +2535,6 @@ class Translator extends Frame implements AWTEventListener {
 		tree.selectNodeAndOpen(newKeyName);
 		tree.repaint();
 		setTranslations();
-		setIndicators(tree.getSelectedNode());
 	}
 
 	private void onLoadJar() {
@@ -2447,61 +2607,6 @@ class Translator extends Frame implements AWTEventListener {
 		c.add(p);
 	}
 
-	private boolean match_regex(String mask, String val, boolean matchCase) {
-		try {
-			RE re = new RE(mask, matchCase ? RE.MATCH_NORMAL : RE.MATCH_CASEINDEPENDENT);
-			return re.match(val);
-		}
-		catch (RESyntaxException e) {
-			infoException(e);
-		}
-		return false;
-	}
-
-	private boolean match_mask(String mask, String val, boolean matchCase) {
-		return match_mask(mask.toCharArray(), 0, val.toCharArray(), 0, matchCase);
-	}
-
-	private boolean match_mask(char[] s, int sp, char[] t, int tp, boolean matchCase) {
-
-		if ((sp == s.length) && (tp == t.length)) {
-			return true;
-		}
-		if ((tp == t.length) && (s[sp] == '*')) {
-			return match_mask(s, sp + 1, t, tp, matchCase);
-		}
-		if ((tp == t.length) && (sp != s.length)) {
-			return false;
-		}
-		if ((sp == s.length) && (tp != t.length)) {
-			return false;
-		}
-
-		if (s[sp] == '?') {
-			return match_mask(s, sp + 1, t, tp + 1, matchCase);
-		}
-		if (!matchCase && (Character.toLowerCase(s[sp]) == Character.toLowerCase(t[tp]))) {
-			return match_mask(s, sp + 1, t, tp + 1, false);
-		}
-		if (matchCase && (s[sp] == t[tp])) {
-			return match_mask(s, sp + 1, t, tp + 1, true);
-		}
-
-		if ((s[sp] != '?') && (s[sp] != '*')) {
-			if (!matchCase && (Character.toLowerCase(s[sp]) != Character.toLowerCase(t[tp]))) {
-				return false;
-			}
-			if (matchCase && (s[sp] != t[tp])) {
-				return false;
-			}
-		}
-		if ((s[sp] == '*') && (s.length == (sp + 1))) {
-			return true;
-		}
-		return IntStream.range(tp, t.length).anyMatch(vp -> match_mask(s, sp + 1, t, vp, matchCase))
-			|| match_mask(s, sp + 1, t, tp, matchCase);
-	}
-
 	private void checkForScrolling(Component what) {
 		if (what instanceof EmulatedTextField) {
 			Rectangle r1 = what.getBounds();
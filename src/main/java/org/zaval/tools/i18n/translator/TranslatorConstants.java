@@ -19,11 +19,13 @@ package org.zaval.tools.i18n.translator;
 
 abstract class TranslatorConstants {
 	public static final String RES_EXTENSION = ".properties";
+	public static final String BIN_EXTENSION = ".jrb";
 	public static final String INI_EXTENSION = ".ini";
 	public static final char KEY_SEPARATOR = '.';
 	public static final char KEY_SEPARATOR_2 = '_';
 
 	public static final int REMOVE_REQUIRED = 9991;
+	public static final int LAZY_TREE_KEYS = 20000; // from this size on, tree nodes are created when first shown
 	public static final String OPEN_IMAGE = "BITMAP1.gif";
 	public static final String CLOSE_IMAGE = "BITMAP2.gif";
 	public static final String WARN_IMAGE = "incomplete.gif";
@@ -18,45 +18,73 @@
 package org.zaval.tools.i18n.translator;
 
 import java.io.IOException;
-import java.io.StringReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.zaval.xml.XmlElement;
 import org.zaval.xml.XmlParseException;
+import org.zaval.xml.XmlPullParser;
 
+/**
+ * Reads the JRC XML format, <code>&lt;key name="..."&gt;&lt;value lang="..."&gt;...&lt;/value&gt;&lt;/key&gt;</code>
+ * under any root element, passing every value on as soon as it is read.
+ * <p>
+ * An element is identified by its <code>lang</code> attribute, else by its <code>name</code>
+ * attribute, else by its tag; a text-only element two or more levels below the root gives the value
+ * for the key and language identified by its first two ancestors below the root.
+ */
 class XmlReader {
-	private final XmlElement xml;
+	private final XmlPullParser parser;
 
-	public XmlReader(String body) throws IOException, XmlParseException {
-		xml = new XmlElement();
-		xml.parse(new StringReader(body));
+	XmlReader(Reader in) {
+		parser = new XmlPullParser(in);
 	}
 
-	public Map<String, String> flatten() {
-		Map<String, String> ask = new HashMap<>();
-		for (XmlElement child : xml.children()) {
-			getTable(ask, child, "");
+	void read(TranslationSink target) throws IOException, XmlParseException {
+		List<String> path = new ArrayList<>(); // ids of the open elements below the root
+		StringBuilder value = new StringBuilder(); // text of the innermost open element
+		boolean leaf = false; // an element is open and has no children so far
+		int depth = 0;
+		for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+			switch (event) {
+				case XmlPullParser.START_ELEMENT:
+					if (depth++ > 0) {
+						String id = parser.getAttribute("lang");
+						if (id == null) {
+							id = parser.getAttribute("name");
+						}
+						path.add(id == null ? parser.getName() : id);
+					}
+					value.setLength(0);
+					leaf = true;
+					break;
+				case XmlPullParser.TEXT:
+					if (leaf) {
+						value.append(parser.getText());
+					}
+					break;
+				case XmlPullParser.END_ELEMENT:
+					if (leaf && (path.size() >= 2)) {
+						target.put(path.get(0), path.get(1), isBlank(value) ? "" : value.toString());
+					}
+					if (--depth > 0) {
+						path.remove(path.size() - 1);
+					}
+					leaf = false;
+					break;
+				default:
+					break;
+			}
 		}
-		return ask;
 	}
 
-	private void getTable(Map<String, String> place, XmlElement root, String prefix) {
-		String xmap = (String) root.getAttribute("lang");
-		if (xmap == null) {
-			xmap = (String) root.getAttribute("name");
-		}
-		if (xmap == null) {
-			xmap = root.getName();
-		}
-		String name = prefix + xmap + "!";
-
-		if (root.getContent() != null) {
-			place.put(prefix + xmap, root.getContent());
-		}
-
-		for (XmlElement child : root.children()) {
-			getTable(place, child, name);
+	private static boolean isBlank(CharSequence s) {
+		for (int i = 0; i < s.length(); ++i) {
+			char ch = s.charAt(i);
+			if ((ch != ' ') && (ch != '\t') && (ch != '\n') && (ch != '\r')) {
+				return false;
+			}
 		}
+		return true;
 	}
 }
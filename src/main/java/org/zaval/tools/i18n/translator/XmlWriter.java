@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a bundle set in the JRC XML format in one pass over the keys. The file starts with a byte
+ * order mark, so that readers can tell UTF-16 (the classic format) from UTF-8.
+ */
+class XmlWriter {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final BundleSet set;
+	private Charset charset = StandardCharsets.UTF_16BE;
+
+	XmlWriter(BundleSet set) {
+		this.set = set;
+	}
+
+	void setUtf8(boolean utf8) {
+		charset = utf8 ? StandardCharsets.UTF_8 : StandardCharsets.UTF_16BE;
+	}
+
+	/**
+	 * @param langs languages to write, or null for all of them
+	 */
+	void write(String fileName, String... langs) throws IOException {
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), charset), BUFFER_SIZE)) {
+			write(out, langs);
+		}
+	}
+
+	void write(Writer out, String... langs) throws IOException {
+		out.write(0xFEFF);
+		out.write("<xml>\n");
+		int items = set.getItemCount();
+		for (int i = 0; i < items; ++i) {
+			BundleItem bi = set.getItem(i);
+			out.write("\t<key name=\"");
+			escape(out, bi.getId());
+			out.write("\">\n");
+			for (String lang : bi.getLanguages()) {
+				if ((langs != null) && !contains(langs, lang)) {
+					continue;
+				}
+				out.write("\t\t<value lang=\"");
+				escape(out, lang);
+				out.write("\">");
+				escape(out, bi.getTranslation(lang));
+				out.write("</value>\n");
+			}
+			out.write("\t</key>\n");
+		}
+		out.write("</xml>\n");
+	}
+
+	private static boolean contains(String[] langs, String lang) {
+		for (String s : langs) {
+			if ((s != null) && s.equalsIgnoreCase(lang)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void escape(Writer out, String s) throws IOException {
+		int from = 0;
+		for (int i = 0; i < s.length(); ++i) {
+			String entity;
+			switch (s.charAt(i)) {
+				case '&':
+					entity = "&amp;";
+					break;
+				case '<':
+					entity = "&lt;";
+					break;
+				case '>':
+					entity = "&gt;";
+					break;
+				case '"':
+					entity = "&quot;";
+					break;
+				default:
+					continue;
+			}
+			out.write(s, from, i - from);
+			out.write(entity);
+			from = i + 1;
+		}
+		out.write(s, from, s.length() - from);
+	}
+}
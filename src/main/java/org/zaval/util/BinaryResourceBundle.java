@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+/**
+ * Resource bundle read from a binary bundle file, as written by JRC Editor. The file is mapped into
+ * memory and searched in place: opening it parses nothing, and a value is decoded only when it is
+ * asked for.
+ * <p>
+ * One file holds all languages of a bundle set. The layout, in big-endian ints and UTF-16 chars:
+ *
+ * <pre>
+ * MAGIC VERSION
+ * langCount   langId[langCount]                  (string numbers)
+ * keyCount    stringCount
+ * offset[stringCount + 1]                        (char offsets of the strings)
+ * key[keyCount]                                  (string numbers, sorted by key)
+ * value[langCount][keyCount]                     (string numbers, -1 for no value)
+ * chars
+ * </pre>
+ *
+ * Equal strings are stored once. Language 0 is the base language of the set.
+ */
+public class BinaryResourceBundle extends ResourceBundle {
+	public static final int MAGIC = 0x4a524342; // "JRCB"
+	public static final int VERSION = 1;
+
+	private final Table table;
+	private final int column;
+
+	private BinaryResourceBundle(Table table, int column) {
+		this.table = table;
+		this.column = column;
+	}
+
+	/**
+	 * Returns the bundle for the locale: the columns for the language, the language and country, and
+	 * so on, chained over the base language the way ResourceBundle.getBundle() chains locale files.
+	 */
+	public static ResourceBundle open(String fileName, Locale locale) throws IOException {
+		Table table = new Table(fileName);
+		BinaryResourceBundle res = new BinaryResourceBundle(table, 0);
+		String name = locale.toString();
+		int end = name.indexOf('_');
+		for (;;) {
+			int col = table.getColumn(end < 0 ? name : name.substring(0, end));
+			if (col > 0) {
+				BinaryResourceBundle child = new BinaryResourceBundle(table, col);
+				child.setParent(res);
+				res = child;
+			}
+			if (end < 0) {
+				break;
+			}
+			end = name.indexOf('_', end + 1);
+		}
+		return res;
+	}
+
+	@Override
+	protected Object handleGetObject(String key) {
+		if (key == null) {
+			throw new NullPointerException();
+		}
+		int slot = table.find(key);
+		return slot < 0 ? null : table.getValue(column, slot);
+	}
+
+	@Override
+	public Enumeration<String> getKeys() {
+		Set<String> res = new LinkedHashSet<>(handleKeySet());
+		if (parent != null) {
+			res.addAll(Collections.list(parent.getKeys()));
+		}
+		return Collections.enumeration(res);
+	}
+
+	@Override
+	protected Set<String> handleKeySet() {
+		Set<String> res = new HashSet<>();
+		for (int slot = 0; slot < table.keyCount; ++slot) {
+			if (table.hasValue(column, slot)) {
+				res.add(table.getString(table.buf.getInt(table.keysPos + (slot * 4))));
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * The mapped file, shared by the bundles of all its languages. Only absolute reads are used, so
+	 * it can be read by any number of threads.
+	 */
+	private static class Table {
+		final ByteBuffer buf;
+		final String[] langs;
+		final int keyCount;
+		final int offsetsPos;
+		final int keysPos;
+		final int valuesPos;
+		final int charsPos;
+
+		Table(String fileName) throws IOException {
+			try (RandomAccessFile f = new RandomAccessFile(fileName, "r")) {
+				buf = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+			}
+			if ((buf.limit() < 16) || (buf.getInt(0) != MAGIC) || (buf.getInt(4) != VERSION)) {
+				throw new IOException(fileName + ": not a binary bundle");
+			}
+			int langCount = buf.getInt(8);
+			int pos = 12 + (langCount * 4);
+			keyCount = buf.getInt(pos);
+			int stringCount = buf.getInt(pos + 4);
+			offsetsPos = pos + 8;
+			keysPos = offsetsPos + ((stringCount + 1) * 4);
+			valuesPos = keysPos + (keyCount * 4);
+			charsPos = valuesPos + (langCount * keyCount * 4);
+			langs = new String[langCount];
+			for (int j = 0; j < langCount; ++j) {
+				langs[j] = getString(buf.getInt(12 + (j * 4)));
+			}
+		}
+
+		int getColumn(String lang) {
+			for (int j = 0; j < langs.length; ++j) {
+				if (langs[j].equalsIgnoreCase(lang)) {
+					return j;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @return slot of the key, or -1
+		 */
+		int find(String key) {
+			int lo = 0;
+			int hi = keyCount - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int cmp = compare(buf.getInt(keysPos + (mid * 4)), key);
+				if (cmp < 0) {
+					lo = mid + 1;
+				}
+				else if (cmp > 0) {
+					hi = mid - 1;
+				}
+				else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		boolean hasValue(int column, int slot) {
+			return buf.getInt(valuesPos + (((column * keyCount) + slot) * 4)) >= 0;
+		}
+
+		String getValue(int column, int slot) {
+			int str = buf.getInt(valuesPos + (((column * keyCount) + slot) * 4));
+			return str < 0 ? null : getString(str);
+		}
+
+		String getString(int str) {
+			int from = buf.getInt(offsetsPos + (str * 4));
+			int len = buf.getInt(offsetsPos + ((str + 1) * 4)) - from;
+			char[] res = new char[len];
+			int at = charsPos + (from * 2);
+			for (int i = 0; i < len; ++i) {
+				res[i] = buf.getChar(at + (i * 2));
+			}
+			return new String(res);
+		}
+
+		/**
+		 * Compares the stored string with the key in String.compareTo() order, without decoding it.
+		 */
+		private int compare(int str, String key) {
+			int from = buf.getInt(offsetsPos + (str * 4));
+			int len = buf.getInt(offsetsPos + ((str + 1) * 4)) - from;
+			int at = charsPos + (from * 2);
+			int n = Math.min(len, key.length());
+			for (int i = 0; i < n; ++i) {
+				int d = buf.getChar(at + (i * 2)) - key.charAt(i);
+				if (d != 0) {
+					return d;
+				}
+			}
+			return len - key.length();
+		}
+	}
+}
@@ -28,10 +28,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class XmlElement {
+	private static final int BUFFER_SIZE = 8192;
 
 	private final Map<String, String> attributes;
 	private final List<XmlElement> children;
@@ -43,6 +42,9 @@ public class XmlElement {
 	private final boolean ignoreWhitespace;
 	private char charReadTooMuch;
 	private Reader reader;
+	private char[] buffer; // window of the input, read in bulk
+	private int bufferPos;
+	private int bufferEnd;
 	private int parserLineNr;
 
 	public XmlElement() {
@@ -74,7 +76,7 @@ public class XmlElement {
 		if (this.ignoreCase) {
 			name = name.toLowerCase();
 		}
-		this.attributes.put(name, value.toString());
+		this.attributes.put(name.intern(), value.toString());
 	}
 
 	public List<XmlElement> children() {
@@ -96,9 +98,17 @@ public class XmlElement {
 		return this.name;
 	}
 
+	/**
+	 * Parses the root element from the reader into this element. The reader is read in blocks of
+	 * 8K chars, so on return it is positioned anywhere up to 8K chars past the end of the root
+	 * element, not just after its end tag; what follows the root cannot be read reliably from it.
+	 */
 	public void parse(Reader reader) throws IOException, XmlParseException {
 		this.charReadTooMuch = '\0';
 		this.reader = reader;
+		this.buffer = new char[BUFFER_SIZE];
+		this.bufferPos = 0;
+		this.bufferEnd = 0;
 		this.parserLineNr = 1;
 
 		for (;;) {
@@ -237,7 +247,7 @@ public class XmlElement {
 		}
 	}
 
-	private void scanIdentifier(StringBuffer result) throws IOException {
+	private void scanIdentifier(StringBuilder result) throws IOException {
 		for (;;) {
 			char ch = this.readChar();
 			if (((ch < 'A') || (ch > 'Z'))
@@ -270,7 +280,7 @@ public class XmlElement {
 		}
 	}
 
-	private char scanWhitespace(StringBuffer result) throws IOException {
+	private char scanWhitespace(StringBuilder result) throws IOException {
 		for (;;) {
 			char ch = this.readChar();
 			switch (ch) {
@@ -286,7 +296,7 @@ public class XmlElement {
 		}
 	}
 
-	private void scanString(StringBuffer string) throws IOException {
+	private void scanString(StringBuilder string) throws IOException {
 		char delimiter = this.readChar();
 		if ((delimiter != '\'') && (delimiter != '"')) {
 			throw this.expectedInput("' or \"");
@@ -305,8 +315,9 @@ public class XmlElement {
 		}
 	}
 
-	private void scanPCData(StringBuffer data) throws IOException {
+	private void scanPCData(StringBuilder data) throws IOException {
 		for (;;) {
+			this.scanPlainChars(data);
 			char ch = this.readChar();
 			if (ch == '<') {
 				ch = this.readChar();
@@ -327,7 +338,7 @@ public class XmlElement {
 		}
 	}
 
-	private boolean checkCDATA(StringBuffer buf) throws IOException {
+	private boolean checkCDATA(StringBuilder buf) throws IOException {
 		char ch = this.readChar();
 		if (ch != '[') {
 			this.unreadChar(ch);
@@ -355,7 +366,7 @@ public class XmlElement {
 						break;
 					case '>':
 						if (delimiterCharsSkipped < 2) {
-							buf.append(IntStream.range(0, delimiterCharsSkipped).mapToObj(i -> "]").collect(Collectors.joining()));
+							this.appendBrackets(buf, delimiterCharsSkipped);
 							delimiterCharsSkipped = 0;
 							buf.append('>');
 						}
@@ -364,9 +375,8 @@ public class XmlElement {
 						}
 						break;
 					default:
-						buf.append(IntStream.range(0, delimiterCharsSkipped)
-							.mapToObj(i -> "]")
-							.collect(Collectors.joining("", "", String.valueOf(ch))));
+						this.appendBrackets(buf, delimiterCharsSkipped);
+						buf.append(ch);
 						delimiterCharsSkipped = 0;
 				}
 			}
@@ -374,6 +384,12 @@ public class XmlElement {
 		}
 	}
 
+	private void appendBrackets(StringBuilder buf, int count) {
+		for (int i = 0; i < count; i += 1) {
+			buf.append(']');
+		}
+	}
+
 	private void skipComment() throws IOException {
 		int dashesToRead = 2;
 		while (dashesToRead > 0) {
@@ -459,24 +475,50 @@ public class XmlElement {
 			return ch;
 		}
 		else {
-			int i = this.reader.read();
-			if (i < 0) {
+			if ((this.bufferPos == this.bufferEnd) && !this.fillBuffer()) {
 				throw this.unexpectedEndOfData();
 			}
-			else if (i == 10) {
+			char ch = this.buffer[this.bufferPos++];
+			if (ch == '\n') {
 				this.parserLineNr += 1;
-				return '\n';
 			}
-			else {
-				return (char) i;
+			return ch;
+		}
+	}
+
+	/**
+	 * Appends the run of buffered chars up to the next markup or entity in one go; readChar() takes
+	 * over for everything else.
+	 */
+	private void scanPlainChars(StringBuilder data) {
+		if (this.charReadTooMuch != '\0') {
+			return;
+		}
+		int start = this.bufferPos;
+		while (this.bufferPos < this.bufferEnd) {
+			char ch = this.buffer[this.bufferPos];
+			if ((ch == '<') || (ch == '&')) {
+				break;
 			}
+			if (ch == '\n') {
+				this.parserLineNr += 1;
+			}
+			this.bufferPos += 1;
 		}
+		data.append(this.buffer, start, this.bufferPos - start);
+	}
+
+	private boolean fillBuffer() throws IOException {
+		int n = this.reader.read(this.buffer, 0, this.buffer.length);
+		this.bufferPos = 0;
+		this.bufferEnd = Math.max(n, 0);
+		return n > 0;
 	}
 
 	private void scanElement(XmlElement elt) throws IOException {
-		StringBuffer buf = new StringBuffer();
+		StringBuilder buf = new StringBuilder();
 		this.scanIdentifier(buf);
-		String name = buf.toString();
+		String name = buf.toString().intern();
 		elt.name = name;
 		char ch = this.scanWhitespace();
 		while ((ch != '>') && (ch != '/')) {
@@ -578,7 +620,7 @@ public class XmlElement {
 		}
 	}
 
-	private void resolveEntity(StringBuffer buf) throws IOException {
+	private void resolveEntity(StringBuilder buf) throws IOException {
 		char ch;
 		StringBuilder keyBuf = new StringBuilder();
 		for (;;) {
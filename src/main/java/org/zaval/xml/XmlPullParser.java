@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming counterpart of {@link XmlElement}: reports elements and text one event at a time, so
+ * documents of any size are read with a fixed amount of memory beyond the largest text run.
+ * <p>
+ * Accepts the same input as {@link XmlElement}: the basic and numeric entities, CDATA sections,
+ * comments, and processing instructions or declarations (which are skipped). Attribute names are
+ * case-insensitive.
+ */
+public class XmlPullParser {
+	public static final int START_ELEMENT = 1;
+	public static final int END_ELEMENT = 2;
+	public static final int TEXT = 3;
+	public static final int END_DOCUMENT = 4;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+	private final char[] buf = new char[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+	private int lineNr = 1;
+
+	private final List<String> openElements = new ArrayList<>();
+	private final Map<String, String> attributes = new HashMap<>();
+	private final StringBuilder text = new StringBuilder();
+	private String name;
+	private boolean emptyElement; // "<x/>" was read, its END_ELEMENT is pending
+	private boolean started;
+
+	public XmlPullParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * @return name of the current element, for START_ELEMENT and END_ELEMENT events
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return attribute of the current element, for START_ELEMENT events
+	 */
+	public String getAttribute(String attr) {
+		return attributes.get(attr.toLowerCase());
+	}
+
+	/**
+	 * @return text with entities resolved, for TEXT events
+	 */
+	public String getText() {
+		return text.toString();
+	}
+
+	public int getLineNr() {
+		return lineNr;
+	}
+
+	public int next() throws IOException {
+		if (emptyElement) {
+			emptyElement = false;
+			openElements.remove(openElements.size() - 1);
+			return END_ELEMENT;
+		}
+		if (!started) {
+			started = true;
+			skipProlog();
+			return scanTag();
+		}
+		if (openElements.isEmpty()) {
+			return END_DOCUMENT;
+		}
+		text.setLength(0);
+		for (;;) {
+			int ch = read();
+			if (ch < 0) {
+				throw unexpectedEndOfData();
+			}
+			if (ch == '<') {
+				ch = read();
+				if (ch == '!') {
+					if (scanSpecial()) {
+						continue;
+					}
+				}
+				else {
+					unread();
+					if (text.length() > 0) {
+						unread(); // report the text first, come back to '<'
+						return TEXT;
+					}
+					return scanTag();
+				}
+			}
+			else if (ch == '&') {
+				resolveEntity(text);
+			}
+			else {
+				text.append((char) ch);
+			}
+		}
+	}
+
+	private void skipProlog() throws IOException {
+		for (;;) {
+			int ch = scanWhitespace();
+			if (ch != '<') {
+				throw expectedInput("<");
+			}
+			ch = read();
+			if ((ch == '?') || (ch == '!')) {
+				skipSpecialTag();
+			}
+			else {
+				unread();
+				return;
+			}
+		}
+	}
+
+	private int scanTag() throws IOException {
+		boolean closing = read() == '/';
+		if (!closing) {
+			unread();
+		}
+		name = scanIdentifier();
+		if (closing) {
+			if (openElements.isEmpty() || !openElements.get(openElements.size() - 1).equals(name)) {
+				throw expectedInput(openElements.isEmpty() ? "end of data" : "/" + openElements.get(openElements.size() - 1));
+			}
+			if (scanWhitespace() != '>') {
+				throw expectedInput(">");
+			}
+			openElements.remove(openElements.size() - 1);
+			return END_ELEMENT;
+		}
+		attributes.clear();
+		int ch = scanWhitespace();
+		while ((ch != '>') && (ch != '/')) {
+			unread();
+			String key = scanIdentifier();
+			if (scanWhitespace() != '=') {
+				throw expectedInput("=");
+			}
+			int delimiter = scanWhitespace();
+			if ((delimiter != '\'') && (delimiter != '"')) {
+				throw expectedInput("' or \"");
+			}
+			StringBuilder value = new StringBuilder();
+			while ((ch = readChar()) != delimiter) {
+				if (ch == '&') {
+					resolveEntity(value);
+				}
+				else {
+					value.append((char) ch);
+				}
+			}
+			attributes.put(key.toLowerCase(), value.toString());
+			ch = scanWhitespace();
+		}
+		if (ch == '/') {
+			if (readChar() != '>') {
+				throw expectedInput(">");
+			}
+			emptyElement = true;
+		}
+		openElements.add(name);
+		return START_ELEMENT;
+	}
+
+	/**
+	 * Handles "&lt;!" in content: appends a CDATA section to the text, or skips a comment.
+	 *
+	 * @return true if the construct was consumed
+	 */
+	private boolean scanSpecial() throws IOException {
+		if (read() != '[') {
+			unread();
+			skipSpecialTag();
+			return true;
+		}
+		for (int i = 0; i < "CDATA[".length(); ++i) {
+			if (readChar() != "CDATA[".charAt(i)) {
+				throw expectedInput("CDATA[");
+			}
+		}
+		int brackets = 0;
+		for (;;) {
+			int ch = readChar();
+			if ((ch == '>') && (brackets >= 2)) {
+				text.setLength(text.length() - 2);
+				return true;
+			}
+			brackets = ch == ']' ? brackets + 1 : 0;
+			text.append((char) ch);
+		}
+	}
+
+	/**
+	 * Skips a comment, a declaration or a processing instruction; the opening "&lt;!" or "&lt;?" is
+	 * already read.
+	 */
+	private void skipSpecialTag() throws IOException {
+		int ch = readChar();
+		if ((ch == '-') && (read() == '-')) {
+			int dashes = 0;
+			while (((ch = readChar()) != '>') || (dashes < 2)) {
+				dashes = ch == '-' ? dashes + 1 : 0;
+			}
+			return;
+		}
+		unread();
+		int delimiter = 0;
+		int tagLevel = 1;
+		int bracketLevel = 0;
+		while (tagLevel > 0) {
+			ch = readChar();
+			if (delimiter != 0) {
+				if (ch == delimiter) {
+					delimiter = 0;
+				}
+			}
+			else if ((ch == '"') || (ch == '\'')) {
+				delimiter = ch;
+			}
+			else if (ch == '[') {
+				++bracketLevel;
+			}
+			else if (ch == ']') {
+				--bracketLevel;
+			}
+			else if (bracketLevel <= 0) {
+				if (ch == '<') {
+					++tagLevel;
+				}
+				else if (ch == '>') {
+					--tagLevel;
+				}
+			}
+		}
+	}
+
+	private String scanIdentifier() throws IOException {
+		int start = pos;
+		StringBuilder res = null;
+		for (;;) {
+			if (pos == limit) {
+				if (res == null) {
+					res = new StringBuilder();
+				}
+				res.append(buf, start, pos - start);
+				if (!fill()) {
+					throw unexpectedEndOfData();
+				}
+				start = pos;
+			}
+			char ch = buf[pos];
+			if (((ch < 'A') || (ch > 'Z'))
+				&& ((ch < 'a') || (ch > 'z'))
+				&& ((ch < '0') || (ch > '9'))
+				&& (ch != '_')
+				&& (ch != '.')
+				&& (ch != ':')
+				&& (ch != '-')
+				&& (ch <= '~')) {
+				break;
+			}
+			++pos;
+		}
+		if (res == null) {
+			return new String(buf, start, pos - start);
+		}
+		return res.append(buf, start, pos - start).toString();
+	}
+
+	private int scanWhitespace() throws IOException {
+		for (;;) {
+			int ch = readChar();
+			if ((ch != ' ') && (ch != '\t') && (ch != '\n') && (ch != '\r')) {
+				return ch;
+			}
+		}
+	}
+
+	private void resolveEntity(StringBuilder res) throws IOException {
+		StringBuilder key = new StringBuilder();
+		for (int ch = readChar(); ch != ';'; ch = readChar()) {
+			key.append((char) ch);
+		}
+		String entity = key.toString();
+		switch (entity) {
+			case "amp":
+				res.append('&');
+				return;
+			case "quot":
+				res.append('"');
+				return;
+			case "apos":
+				res.append('\'');
+				return;
+			case "lt":
+				res.append('<');
+				return;
+			case "gt":
+				res.append('>');
+				return;
+			default:
+				try {
+					if (entity.startsWith("#x")) {
+						res.append((char) Integer.parseInt(entity.substring(2), 16));
+						return;
+					}
+					if (entity.startsWith("#")) {
+						res.append((char) Integer.parseInt(entity.substring(1), 10));
+						return;
+					}
+				}
+				catch (NumberFormatException e) {
+				}
+				throw new XmlParseException(name, lineNr, "Unknown or invalid entity: &" + entity + ";");
+		}
+	}
+
+	private int readChar() throws IOException {
+		int ch = read();
+		if (ch < 0) {
+			throw unexpectedEndOfData();
+		}
+		return ch;
+	}
+
+	private int read() throws IOException {
+		if ((pos == limit) && !fill()) {
+			++pos; // keeps unread() symmetric at the end of data
+			return -1;
+		}
+		char ch = buf[pos++];
+		if (ch == '\n') {
+			++lineNr;
+		}
+		return ch;
+	}
+
+	/**
+	 * Steps back one char; only valid right after read(), which never refills the buffer before the
+	 * char it returns, so the char is still there.
+	 */
+	private void unread() {
+		--pos;
+		if ((pos < limit) && (buf[pos] == '\n')) {
+			--lineNr;
+		}
+	}
+
+	private boolean fill() throws IOException {
+		if (pos > limit) {
+			return false; // end of data already seen
+		}
+		// keep the last char so that unread() works across refills
+		int keep = pos > 0 ? 1 : 0;
+		if (keep > 0) {
+			buf[0] = buf[pos - 1];
+		}
+		int n = reader.read(buf, keep, buf.length - keep);
+		if (n <= 0) {
+			pos = keep;
+			limit = keep;
+			return false;
+		}
+		pos = keep;
+		limit = keep + n;
+		return true;
+	}
+
+	private XmlParseException unexpectedEndOfData() {
+		return new XmlParseException(name, lineNr, "Unexpected end of data reached");
+	}
+
+	private XmlParseException expectedInput(String charSet) {
+		return new XmlParseException(name, lineNr, "Expected: " + charSet);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zaval.util.BinaryResourceBundle;
+
+/**
+ * Writes bundle sets with BinaryWriter and reads them back with BinaryResourceBundle.
+ */
+public class BinaryWriterTest {
+	private static final String[] KEYS = { "a", "B", "a.b", "a-b", "ä", "été", "z", "Z.long.key.name", "" };
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("jrc", ".jrb");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static BundleSet sample() {
+		BundleSet set = new BundleSet();
+		for (String key : KEYS) {
+			set.putTranslation(key, "en", "en:" + key);
+		}
+		for (int i = 0; i < KEYS.length; i += 2) {
+			set.putTranslation(KEYS[i], "de", "de:" + KEYS[i]);
+		}
+		set.putTranslation("a", "de_AT", "at:a");
+		set.putTranslation("a", "ru", "а");
+		set.putTranslation("same", "en", "shared");
+		set.putTranslation("same", "de", "shared");
+		set.putTranslation("blank", "en", "");
+		return set;
+	}
+
+	private ResourceBundle open(String locale) throws IOException {
+		String[] parts = locale.split("_");
+		return BinaryResourceBundle.open(file.getPath(), new Locale(parts[0], parts.length > 1 ? parts[1] : ""));
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		new BinaryWriter(sample()).write(file.getPath(), (String[]) null);
+		ResourceBundle en = open("en");
+		ResourceBundle de = open("de");
+		for (int i = 0; i < KEYS.length; ++i) {
+			assertEquals("en:" + KEYS[i], en.getString(KEYS[i]));
+			assertEquals((i % 2) == 0 ? "de:" + KEYS[i] : "en:" + KEYS[i], de.getString(KEYS[i]));
+		}
+		assertEquals("shared", de.getString("same"));
+		assertEquals("", de.getString("blank"));
+		assertEquals("а", open("ru").getString("a"));
+	}
+
+	@Test
+	public void chainsCountryOverLanguage() throws IOException {
+		new BinaryWriter(sample()).write(file.getPath(), (String[]) null);
+		ResourceBundle at = open("de_AT");
+		assertEquals("at:a", at.getString("a"));
+		assertEquals("de:a.b", at.getString("a.b"));
+		assertEquals("en:B", at.getString("B"));
+		assertEquals("en:a", open("fr").getString("a"));
+	}
+
+	@Test
+	public void listsAllKeys() throws IOException {
+		new BinaryWriter(sample()).write(file.getPath(), (String[]) null);
+		HashSet<String> expected = new HashSet<>(Arrays.asList(KEYS));
+		expected.add("same");
+		expected.add("blank");
+		assertEquals(expected, open("de").keySet());
+	}
+
+	@Test
+	public void unknownKeyIsMissing() throws IOException {
+		new BinaryWriter(sample()).write(file.getPath(), (String[]) null);
+		ResourceBundle de = open("de");
+		assertFalse(de.containsKey("a.c"));
+		try {
+			de.getString("a.c");
+			fail("no value expected");
+		}
+		catch (MissingResourceException e) {
+			assertEquals("a.c", e.getKey());
+		}
+	}
+
+	@Test
+	public void writesBaseAndGivenLanguages() throws IOException {
+		new BinaryWriter(sample()).write(file.getPath(), "DE");
+		assertEquals("de:a", open("de").getString("a"));
+		assertEquals("de:a", open("de_AT").getString("a"));
+		assertEquals("en:a", open("ru").getString("a"));
+	}
+
+	@Test
+	public void manyKeysRoundTrip() throws IOException {
+		BundleSet set = new BundleSet();
+		for (int i = 0; i < 20000; ++i) {
+			set.putTranslation("key." + i, "en", "value " + (i % 100));
+		}
+		new BinaryWriter(set).write(file.getPath(), (String[]) null);
+		ResourceBundle en = open("en");
+		for (int i = 0; i < 20000; ++i) {
+			assertEquals("value " + (i % 100), en.getString("key." + i));
+		}
+		assertEquals(20000, en.keySet().size());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write("JRC Editor".getBytes("US-ASCII"));
+			out.write(new byte[16]);
+		}
+		open("en");
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reads bundle sets from locale files one by one and concurrently, and checks that both give the
+ * same languages, keys, values and comments.
+ */
+public class BundleManagerTest {
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("jrc").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(dir.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private String write(String name, String text, String charset) throws IOException {
+		File f = new File(dir, name);
+		Files.write(f.toPath(), text.getBytes(charset));
+		return f.getPath();
+	}
+
+	/**
+	 * Everything a reader can tell about the set, in the set's order.
+	 */
+	private static String dump(BundleSet set) {
+		StringBuilder sb = new StringBuilder();
+		for (int j = 0; j < set.getLangCount(); ++j) {
+			LangItem lang = set.getLanguage(j);
+			sb.append(lang.getLangId()).append(' ').append(new File(lang.getLangFile()).getName());
+			sb.append(lang.isDirty() ? " dirty\n" : "\n");
+		}
+		for (int i = 0; i < set.getItemCount(); ++i) {
+			BundleItem bi = set.getItem(i);
+			sb.append(bi.getId()).append(" #").append(bi.getComment());
+			for (int j = 0; j < set.getLangCount(); ++j) {
+				sb.append(" | ").append(bi.getTranslation(set.getLanguage(j).getLangId()));
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void propertiesReadAlikeInParallel() throws IOException {
+		String base = write("t.properties", "# File menu\nmenu.file=File\nmenu.edit = Edit\nlong=one \\\n  two\n", "ISO-8859-1");
+		write("t_de.properties", "menu.file=Datei\n# only in German\nde.only=\\u00c4nderung\n", "ISO-8859-1");
+		write("t_ru.properties", "menu.edit=\\u041f\\u0440\\u0430\\u0432\\u043a\\u0430\nbroken line\n=no key\n", "ISO-8859-1");
+		write("t_fr_CA.properties", "menu.file=Fichier\n", "ISO-8859-1");
+		write("other.properties", "menu.file=Other\n", "ISO-8859-1");
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 3000; ++i) {
+			big.append("key.").append(i).append('=').append(i).append('\n');
+		}
+		write("t_it.properties", big.toString(), "ISO-8859-1");
+
+		BundleSet serial = new BundleManager(base, false).getBundle();
+		BundleSet parallel = new BundleManager(base, true).getBundle();
+		assertEquals(dump(serial), dump(parallel));
+
+		assertEquals(5, parallel.getLangCount());
+		assertEquals(3000 + 4, parallel.getItemCount());
+		assertEquals("Datei", parallel.getItem("menu.file").getTranslation("de"));
+		assertEquals("Fichier", parallel.getItem("menu.file").getTranslation("fr_CA"));
+		assertEquals("Правка", parallel.getItem("menu.edit").getTranslation("ru"));
+		assertEquals("Änderung", parallel.getItem("de.only").getTranslation("de"));
+		assertEquals(" only in German", parallel.getItem("de.only").getComment());
+		assertEquals("one   two", parallel.getItem("long").getTranslation("en"));
+		assertEquals("1234", parallel.getItem("key.1234").getTranslation("it"));
+		for (int j = 0; j < parallel.getLangCount(); ++j) {
+			assertFalse(parallel.getLanguage(j).isDirty());
+		}
+	}
+
+	@Test
+	public void unicodeFilesReadAlikeInParallel() throws IOException {
+		String base = write("u.txt", "\uFEFFmenu.file=File\r\nmenu.edit=Edit\r\n", "UTF-16LE");
+		write("u_de.txt", "\uFEFFmenu.file=Datei\r\n", "UTF-16BE");
+		write("u_ja.txt", "\uFEFFmenu.file=ファイル\r\n", "UTF-16LE");
+
+		BundleSet serial = new BundleManager(base, false).getBundle();
+		BundleSet parallel = new BundleManager(base, true).getBundle();
+		assertEquals(dump(serial), dump(parallel));
+		assertEquals("Datei", parallel.getItem("menu.file").getTranslation("de"));
+		assertEquals("ファイル", parallel.getItem("menu.file").getTranslation("ja"));
+		assertEquals("Edit", parallel.getItem("menu.edit").getTranslation("en"));
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Stores extraction results with ExtractionCache and checks what a new instance reads back.
+ */
+public class ExtractionCacheTest {
+	private File dir;
+	private File cacheFile;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("jrc").toFile();
+		cacheFile = new File(dir, "cache");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(dir.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private File source(String name, String text) throws IOException {
+		File f = new File(dir, name);
+		Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		return f;
+	}
+
+	private static ExtractionCache.Entry entry(File f, Map<String, String> table) throws IOException {
+		byte[] content = Files.readAllBytes(f.toPath());
+		return new ExtractionCache.Entry(f.getAbsolutePath(), content.length, f.lastModified(), ExtractionCache.hash(content), table);
+	}
+
+	private ExtractionCache reload() {
+		ExtractionCache cache = new ExtractionCache(cacheFile.getPath());
+		cache.load();
+		return cache;
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		Map<String, String> table = new LinkedHashMap<>();
+		table.put("A.title", "Title");
+		table.put("A.unicode", "Grüße, мир, 𝄞");
+		char[] big = new char[200000];
+		Arrays.fill(big, 'x');
+		table.put("A.big", new String(big));
+		table.put("A.empty", "");
+		File a = source("A.java", "class A {}");
+		File b = source("B.java", "class B {");
+
+		ExtractionCache cache = new ExtractionCache(cacheFile.getPath());
+		cache.load();
+		cache.update(dir.getPath(), Arrays.asList(entry(a, table), entry(b, null)));
+
+		cache = reload();
+		ExtractionCache.Lookup la = cache.lookup(a.getAbsolutePath(), a.length(), a.lastModified());
+		assertNotNull(la.entry);
+		assertEquals(new ArrayList<>(table.entrySet()), new ArrayList<>(la.entry.table.entrySet()));
+		assertEquals(ExtractionCache.hash(Files.readAllBytes(a.toPath())), la.entry.hash);
+		assertNull(la.content);
+
+		ExtractionCache.Lookup lb = cache.lookup(b.getAbsolutePath(), b.length(), b.lastModified());
+		assertNotNull(lb.entry);
+		assertNull(lb.entry.table);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void checksContentWhenOnlyTimeChanged() throws IOException {
+		File a = source("A.java", "class A {}");
+		ExtractionCache cache = new ExtractionCache(cacheFile.getPath());
+		cache.update(dir.getPath(), Collections.singletonList(entry(a, Collections.singletonMap("k", "v"))));
+		cache = reload();
+
+		ExtractionCache.Lookup same = cache.lookup(a.getAbsolutePath(), a.length(), a.lastModified() + 1000);
+		assertNotNull(same.entry);
+		assertEquals(a.lastModified() + 1000, same.entry.mtime);
+		assertEquals("v", same.entry.table.get("k"));
+		assertNotNull(same.content);
+
+		source("A.java", "class Z {}");
+		ExtractionCache.Lookup changed = cache.lookup(a.getAbsolutePath(), a.length(), a.lastModified() + 2000);
+		assertNull(changed.entry);
+		assertEquals(ExtractionCache.hash(changed.content), changed.hash);
+		assertEquals("class Z {}", new String(changed.content, StandardCharsets.UTF_8));
+
+		ExtractionCache.Lookup resized = cache.lookup(a.getAbsolutePath(), a.length() + 1, a.lastModified());
+		assertNull(resized.entry);
+		assertNull(resized.content);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void updateReplacesOnlyEntriesUnderRoot() throws IOException {
+		File sub = new File(dir, "sub");
+		sub.mkdir();
+		File a = source("A.java", "class A {}");
+		File b = source("sub/B.java", "class B {}");
+		ExtractionCache cache = new ExtractionCache(cacheFile.getPath());
+		cache.update(dir.getPath(), Arrays.asList(entry(a, Collections.emptyMap()), entry(b, Collections.emptyMap())));
+		cache.update(sub.getPath(), Collections.emptyList());
+
+		cache = reload();
+		assertNotNull(cache.lookup(a.getAbsolutePath(), a.length(), a.lastModified()).entry);
+		assertNull(cache.lookup(b.getAbsolutePath(), b.length(), b.lastModified()).entry);
+	}
+
+	@Test
+	public void brokenFilesLeaveCacheEmpty() throws IOException {
+		File a = source("A.java", "class A {}");
+		ExtractionCache cache = new ExtractionCache(cacheFile.getPath());
+		cache.update(dir.getPath(), Collections.singletonList(entry(a, Collections.singletonMap("k", "v"))));
+
+		byte[] data = Files.readAllBytes(cacheFile.toPath());
+		Files.write(cacheFile.toPath(), Arrays.copyOf(data, data.length / 2));
+		assertNull(reload().lookup(a.getAbsolutePath(), a.length(), a.lastModified()).entry);
+
+		Files.write(cacheFile.toPath(), "not a cache".getBytes(StandardCharsets.US_ASCII));
+		assertNull(reload().lookup(a.getAbsolutePath(), a.length(), a.lastModified()).entry);
+
+		cacheFile.delete();
+		assertNull(reload().lookup(a.getAbsolutePath(), a.length(), a.lastModified()).entry);
+	}
+
+	@Test
+	public void hugeLengthsDoNotTakeMemory() throws IOException {
+		List<int[]> cases = Arrays.asList(new int[] { Integer.MAX_VALUE, 0 }, new int[] { 1 << 26, 0 }, new int[] { 1, Integer.MAX_VALUE });
+		for (int[] c : cases) {
+			try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(cacheFile)))) {
+				out.writeInt(0x4a524345);
+				out.writeInt(1);
+				out.writeInt(1);
+				out.writeInt(c[0]); // path length
+				out.write('p');
+				if (c[0] == 1) {
+					out.writeLong(0);
+					out.writeLong(0);
+					out.writeLong(0);
+					out.writeInt(c[1]); // entry count
+				}
+			}
+			ExtractionCache cache = reload();
+			assertNull(cache.lookup("p", 0, 0).entry);
+		}
+	}
+}
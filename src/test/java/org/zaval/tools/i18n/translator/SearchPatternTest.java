@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.apache.regexp.RESyntaxException;
+import org.junit.Test;
+
+/**
+ * Checks SearchPattern against java.util.regex on random values and criteria. The alphabet holds
+ * chars that share a bucket of the skip tables ('a' and 'š'), so that those are exercised too.
+ */
+public class SearchPatternTest {
+	private static final String ALPHABET = "aAbšŠ.";
+
+	private final Random random = new Random(7);
+
+	private String randomText(String alphabet, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		for (int n = random.nextInt(maxLength + 1); n > 0; --n) {
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+	private static int flags(boolean matchCase) {
+		return matchCase ? Pattern.DOTALL : Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+	}
+
+	private static Pattern maskRegex(String mask, boolean matchCase) {
+		StringBuilder sb = new StringBuilder();
+		for (char c : mask.toCharArray()) {
+			sb.append(c == '*' ? ".*" : c == '?' ? "." : Pattern.quote(String.valueOf(c)));
+		}
+		return Pattern.compile(sb.toString(), flags(matchCase));
+	}
+
+	@Test
+	public void maskMatchesLikeRegex() throws RESyntaxException {
+		for (int i = 0; i < 20000; ++i) {
+			boolean matchCase = random.nextBoolean();
+			String mask = randomText(ALPHABET + "**??", 7);
+			String value = randomText(ALPHABET, 12);
+			SearchPattern p = new SearchPattern(mask, SearchPattern.MASK, matchCase);
+			boolean expected = maskRegex(mask, matchCase).matcher(value).matches();
+			assertEquals(mask + " ~ " + value + " matchCase=" + matchCase, expected, p.matches(value));
+			if (expected) {
+				assertEquals("X", p.replace(value, "X", false));
+				String literal = p.getLiteral();
+				assertTrue(literal + " in " + value, (literal == null) || value.toLowerCase().contains(literal.toLowerCase()));
+			}
+			else {
+				assertEquals(value, p.replace(value, "X", true));
+			}
+		}
+	}
+
+	@Test
+	public void textMatchesLikeRegex() throws RESyntaxException {
+		for (int i = 0; i < 20000; ++i) {
+			boolean matchCase = random.nextBoolean();
+			String text = randomText(ALPHABET, 4);
+			String value = randomText(ALPHABET, 16);
+			SearchPattern p = new SearchPattern(text, SearchPattern.EXACT, matchCase);
+			Pattern re = Pattern.compile(Pattern.quote(text), flags(matchCase));
+			String info = text + " in " + value + " matchCase=" + matchCase;
+			assertEquals(info, re.matcher(value).find(), p.matches(value));
+			if (!text.isEmpty()) {
+				assertEquals(info, re.matcher(value).replaceFirst("#"), p.replace(value, "#", false));
+				assertEquals(info, re.matcher(value).replaceAll("#"), p.replace(value, "#", true));
+			}
+			assertEquals(text, p.getLiteral());
+		}
+	}
+
+	@Test
+	public void regexIgnoresCaseOnRequest() throws RESyntaxException {
+		SearchPattern p = new SearchPattern("fi(le|ve)", SearchPattern.REGEX, false);
+		assertTrue(p.matches("Open FILE"));
+		assertEquals("Open X and X", p.replace("Open File and five", "X", true));
+		assertNull(p.getLiteral());
+		assertFalse(new SearchPattern("fi(le|ve)", SearchPattern.REGEX, true).matches("Open FILE"));
+	}
+
+	@Test
+	public void copiesMatchAlike() throws RESyntaxException {
+		SearchPattern p = new SearchPattern("a*b?", SearchPattern.MASK, false);
+		SearchPattern q = p.copy();
+		assertEquals(p.getCriteria(), q.getCriteria());
+		assertTrue(q.matches("AxxBy"));
+		assertFalse(q.matches("AxxB"));
+		assertFalse(q.matches(null));
+		assertNull(q.replace(null, "X", true));
+	}
+}
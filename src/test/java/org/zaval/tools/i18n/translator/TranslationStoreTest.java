@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the counts and the value index of TranslationStore against values recomputed from scratch,
+ * after random sequences of changes.
+ */
+public class TranslationStoreTest {
+	private static final String[] LANGS = { "en", "de", "ru" };
+
+	private final Random random = new Random(42);
+
+	private String randomValue() {
+		switch (random.nextInt(6)) {
+			case 0:
+				return null;
+			case 1:
+				return " ";
+			default:
+				StringBuilder sb = new StringBuilder();
+				for (int n = random.nextInt(8); n > 0; --n) {
+					sb.append("abAB ".charAt(random.nextInt(5)));
+				}
+				return sb.toString();
+		}
+	}
+
+	/**
+	 * Makes random changes, keeping the list of slots in use up to date.
+	 */
+	private void mutate(TranslationStore store, List<Integer> live, int steps) {
+		for (int i = 0; i < steps; ++i) {
+			int op = random.nextInt(10);
+			if ((op == 0) || live.isEmpty()) {
+				live.add(store.allocate("key" + random.nextInt(1000)));
+			}
+			else if (op == 1) {
+				store.release(live.remove(random.nextInt(live.size())));
+			}
+			else {
+				int slot = live.get(random.nextInt(live.size()));
+				store.put(slot, LANGS[random.nextInt(LANGS.length)], randomValue());
+			}
+		}
+	}
+
+	private static BitSet scan(TranslationStore store, List<Integer> live, String text) {
+		BitSet res = new BitSet();
+		String lower = text.toLowerCase();
+		for (int slot : live) {
+			for (String lang : LANGS) {
+				String value = store.get(slot, lang);
+				if ((value != null) && value.toLowerCase().contains(lower)) {
+					res.set(slot);
+				}
+			}
+		}
+		return res;
+	}
+
+	@Test
+	public void indexFollowsChanges() {
+		TranslationStore store = new TranslationStore();
+		store.setIndexed(true);
+		List<Integer> live = new ArrayList<>();
+		String[] queries = { "aaa", "abA", "b b", "BBBB", "a a a", "xyz" };
+		for (int round = 0; round < 50; ++round) {
+			mutate(store, live, 200);
+			BitSet[] found = new BitSet[queries.length];
+			for (int q = 0; q < queries.length; ++q) {
+				found[q] = store.findCandidates(queries[q]);
+				BitSet missed = scan(store, live, queries[q]);
+				missed.andNot(found[q]);
+				assertTrue("missed " + missed + " for " + queries[q], missed.isEmpty());
+				for (int slot = found[q].nextSetBit(0); slot >= 0; slot = found[q].nextSetBit(slot + 1)) {
+					assertTrue("released slot " + slot, live.contains(slot));
+				}
+			}
+			store.setIndexed(false);
+			store.setIndexed(true);
+			for (int q = 0; q < queries.length; ++q) {
+				assertEquals(queries[q], store.findCandidates(queries[q]), found[q]);
+			}
+		}
+		assertNull(store.findCandidates("ab"));
+		store.setIndexed(false);
+		assertNull(store.findCandidates("abc"));
+	}
+
+	@Test
+	public void countsFollowChanges() {
+		TranslationStore store = new TranslationStore();
+		List<String> tracked = new ArrayList<>(Arrays.asList("en", "de"));
+		for (String lang : tracked) {
+			store.track(lang, true);
+		}
+		int[] states = new int[4]; // keys per state, as told by the listener
+		store.setListener((key, oldState, newState) -> {
+			--states[oldState];
+			++states[newState];
+		});
+		List<Integer> live = new ArrayList<>();
+		for (int round = 0; round < 50; ++round) {
+			mutate(store, live, 200);
+			if ((round % 10) == 9) {
+				boolean on = !tracked.contains("ru");
+				store.track("ru", on);
+				if (on) {
+					tracked.add("ru");
+				}
+				else {
+					tracked.remove("ru");
+				}
+				// no listener hears about tracking changes
+				states[TranslationStore.MISSING] = store.getMissingCount();
+				states[TranslationStore.PARTIAL] = store.getPartialCount();
+			}
+			int missing = 0;
+			int partial = 0;
+			for (int slot : live) {
+				int filled = 0;
+				for (String lang : tracked) {
+					String value = store.get(slot, lang);
+					if ((value != null) && !value.trim().isEmpty()) {
+						++filled;
+					}
+				}
+				int state = filled == tracked.size() ? TranslationStore.COMPLETE
+					: filled == 0 ? TranslationStore.MISSING : TranslationStore.PARTIAL;
+				assertEquals(state, store.getState(slot));
+				missing += state == TranslationStore.MISSING ? 1 : 0;
+				partial += state == TranslationStore.PARTIAL ? 1 : 0;
+			}
+			assertEquals(missing, store.getMissingCount());
+			assertEquals(partial, store.getPartialCount());
+			assertEquals(missing, states[TranslationStore.MISSING]);
+			assertEquals(partial, states[TranslationStore.PARTIAL]);
+		}
+	}
+
+	@Test
+	public void releasedSlotsAreReusedEmpty() {
+		TranslationStore store = new TranslationStore();
+		int a = store.allocate("a");
+		store.put(a, "en", "value");
+		store.release(a);
+		int b = store.allocate("b");
+		assertEquals(a, b);
+		assertEquals("b", store.getKey(b));
+		assertNull(store.get(b, "en"));
+		assertTrue(store.getLanguages(b).isEmpty());
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.tools.i18n.translator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zaval.xml.XmlParseException;
+
+/**
+ * Writes bundle sets with XmlWriter in both encodings and reads them back with XmlReader.
+ */
+public class XmlWriterTest {
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("jrc", ".xml");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static BundleSet sample() {
+		BundleSet set = new BundleSet();
+		set.putTranslation("menu.file", "en", "File");
+		set.putTranslation("menu.file", "de", "Datei");
+		set.putTranslation("menu.file", "ru", "Файл");
+		set.putTranslation("quote.all", "en", "<a href=\"x\">Tom & Jerry</a> > 1");
+		set.putTranslation("lines", "en", "first\n\tsecond");
+		set.putTranslation("surrogates", "de", "G-clef 𝄞");
+		set.putTranslation("empty", "en", "");
+		return set;
+	}
+
+	/**
+	 * @param langs languages to take, or null for all of them
+	 */
+	private static Map<String, String> values(BundleSet set, String... langs) {
+		Map<String, String> res = new TreeMap<>();
+		for (int i = 0; i < set.getItemCount(); ++i) {
+			BundleItem bi = set.getItem(i);
+			for (String lang : bi.getLanguages()) {
+				if ((langs == null) || contains(langs, lang)) {
+					res.put(bi.getId() + '/' + lang, bi.getTranslation(lang));
+				}
+			}
+		}
+		return res;
+	}
+
+	private static boolean contains(String[] langs, String lang) {
+		for (String s : langs) {
+			if (s.equals(lang)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Map<String, String> read() throws IOException, XmlParseException {
+		Map<String, String> res = new TreeMap<>();
+		try (Reader in = BundleManager.openText(file.getPath())) {
+			new XmlReader(in).read((key, lang, value) -> res.put(key + '/' + lang, value));
+		}
+		return res;
+	}
+
+	@Test
+	public void utf16RoundTrip() throws Exception {
+		BundleSet set = sample();
+		new XmlWriter(set).write(file.getPath(), (String[]) null);
+		byte[] data = Files.readAllBytes(file.toPath());
+		assertEquals(0xFE, data[0] & 0xFF);
+		assertEquals(0xFF, data[1] & 0xFF);
+		assertEquals(values(set, (String[]) null), read());
+	}
+
+	@Test
+	public void utf8RoundTrip() throws Exception {
+		BundleSet set = sample();
+		XmlWriter writer = new XmlWriter(set);
+		writer.setUtf8(true);
+		writer.write(file.getPath(), (String[]) null);
+		byte[] data = Files.readAllBytes(file.toPath());
+		assertEquals(0xEF, data[0] & 0xFF);
+		assertEquals(0xBB, data[1] & 0xFF);
+		assertEquals(0xBF, data[2] & 0xFF);
+		assertEquals(values(set, (String[]) null), read());
+	}
+
+	@Test
+	public void writesOnlyGivenLanguages() throws Exception {
+		BundleSet set = sample();
+		XmlWriter writer = new XmlWriter(set);
+		writer.setUtf8(true);
+		writer.write(file.getPath(), "de", "RU");
+		Map<String, String> expected = values(set, "de", "ru");
+		assertEquals(3, expected.size());
+		assertEquals(expected, read());
+	}
+
+	@Test
+	public void roundTripAcrossBuffers() throws Exception {
+		BundleSet set = new BundleSet();
+		for (int i = 0; i < 5000; ++i) {
+			set.putTranslation("key." + i, "en", "value " + i + " & <more>");
+			set.putTranslation("key." + i, "ru", "значение " + i);
+		}
+		new XmlWriter(set).write(file.getPath(), (String[]) null);
+		Map<String, String> expected = values(set, (String[]) null);
+		assertEquals(10000, expected.size());
+		assertEquals(expected, read());
+	}
+}
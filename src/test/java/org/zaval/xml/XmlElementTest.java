@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2001-2002  Zaval Creative Engineering Group (http://www.zaval.org)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * (version 2) as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package org.zaval.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Parses documents with XmlElement, whole and through a reader that hands out a few chars at a time,
+ * so that every construct also gets split at the end of the char buffer.
+ */
+public class XmlElementTest {
+	private static final String SAMPLE = "<?xml version=\"1.0\"?>\n<!-- comment -->\n<!DOCTYPE xml>\n"
+		+ "<Root A=\"1\" b='two &amp; &lt;3&gt;'>\n"
+		+ "\t<key name=\"k\">\n"
+		+ "\t\t<value lang=\"en\">a &quot;b&quot; &apos;c&apos; &#65;&#x42;</value>\n"
+		+ "\t\t<value lang='de'><![CDATA[<raw> & ]]></value>\n"
+		+ "\t</key>\n"
+		+ "\t<empty/>\n"
+		+ "</Root>\n";
+
+	/**
+	 * Reads at most a few chars per call.
+	 */
+	private static class TrickleReader extends Reader {
+		private final Reader in;
+		private final Random random = new Random(1);
+
+		TrickleReader(String s) {
+			in = new StringReader(s);
+		}
+
+		@Override
+		public int read(char[] buf, int off, int len) throws IOException {
+			return in.read(buf, off, Math.min(len, 1 + random.nextInt(7)));
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static XmlElement parse(Reader in) throws IOException {
+		XmlElement root = new XmlElement();
+		root.parse(in);
+		return root;
+	}
+
+	private static String failure(String doc) throws IOException {
+		try {
+			parse(new StringReader(doc));
+		}
+		catch (XmlParseException e) {
+			try {
+				parse(new TrickleReader(doc));
+				fail("no exception for trickled " + doc);
+			}
+			catch (XmlParseException e2) {
+				assertEquals(e.getMessage(), e2.getMessage());
+			}
+			return e.getMessage();
+		}
+		fail("no exception for " + doc);
+		return null;
+	}
+
+	@Test
+	public void parsesSample() throws IOException {
+		XmlElement root = parse(new StringReader(SAMPLE));
+		assertEquals("<Root a=\"1\" b=\"two &amp; &lt;3&gt;\"><key name=\"k\">"
+			+ "<value lang=\"en\">a &quot;b&quot; &apos;c&apos; AB</value>"
+			+ "<value lang=\"de\">&lt;raw&gt; &amp; </value></key><empty/></Root>", root.toString());
+		XmlElement key = root.children().get(0);
+		assertEquals("key", key.getName());
+		assertEquals("a \"b\" 'c' AB", key.children().get(0).getContent());
+		assertEquals("<raw> & ", key.children().get(1).getContent());
+		assertEquals("two & <3>", root.getAttribute("B"));
+		assertEquals(root.toString(), parse(new TrickleReader(SAMPLE)).toString());
+	}
+
+	@Test
+	public void reportsErrorLines() throws IOException {
+		String prefix = "XML Parse Exception during parsing of a a element at line ";
+		assertEquals(prefix + "3: Expected: b", failure("<a>\n<b>\n</c>\n</a>"));
+		assertEquals(prefix + "3: Expected: ' or \"", failure("<a>\n\n<b x=1/>\n</a>"));
+		assertEquals(prefix + "2: Unknown or invalid entity: &unknown;", failure("<a>\n&unknown;\n</a>"));
+		assertEquals(prefix + "4: Unknown or invalid entity: &unknown;", failure("<a>text\nmore text\nand more\n&unknown;</a>"));
+		assertEquals(prefix + "2: Unexpected end of data reached", failure("<a>\n<b>text"));
+		assertEquals(prefix + "2: Unexpected end of data reached", failure("<a>\n<!-- never closed"));
+		assertEquals(prefix + "1: Expected: <", failure("<a><b>one</b>two</a>"));
+		assertEquals("XML Parse Exception during parsing of the XML definition at line 3: Expected: <", failure("\n\nx<a/>"));
+	}
+
+	@Test
+	public void parsesAcrossBuffers() throws IOException {
+		StringBuilder sb = new StringBuilder("<xml>\n");
+		for (int i = 0; i < 3000; ++i) {
+			sb.append("\t<key name=\"key.").append(i).append("\">\n");
+			sb.append("\t\t<value lang=\"en\">value &amp; ").append(i).append("</value>\n");
+			sb.append("\t\t<value lang=\"de\"><![CDATA[<").append(i).append(">]]></value>\n");
+			sb.append("\t</key>\n");
+		}
+		String doc = sb.append("</xml>\n").toString();
+		XmlElement root = parse(new StringReader(doc));
+		assertEquals(3000, root.children().size());
+		for (int i = 0; i < 3000; ++i) {
+			XmlElement key = root.children().get(i);
+			assertEquals("key." + i, key.getAttribute("name"));
+			assertEquals("value & " + i, key.children().get(0).getContent());
+			assertEquals("<" + i + ">", key.children().get(1).getContent());
+		}
+		assertEquals(root.toString(), parse(new TrickleReader(doc)).toString());
+
+		String broken = doc.substring(0, doc.length() - "</key>\n</xml>\n".length()) + "</kex>\n</xml>\n";
+		assertEquals("XML Parse Exception during parsing of a xml element at line " + ((3000 * 4) + 1) + ": Expected: key",
+			failure(broken));
+	}
+}